@@ -2,24 +2,32 @@ package com.shade.decima.model.app;
 
 import com.shade.decima.model.packfile.PackfileManager;
 import com.shade.decima.model.rtti.registry.RTTITypeRegistry;
+import com.shade.decima.model.util.Codec;
 import com.shade.decima.model.util.Compressor;
 import com.shade.util.NotNull;
+import com.shade.util.Nullable;
 
 import java.io.Closeable;
 import java.io.IOException;
+import java.nio.file.Path;
 
 public class Project implements Closeable {
     private final ProjectContainer container;
     private final RTTITypeRegistry typeRegistry;
     private final PackfileManager packfileManager;
-    private final Compressor compressor;
+    private final Codec compressor;
     private final ProjectPersister persister;
 
-    public Project(@NotNull ProjectContainer container) {
+    /**
+     * @param packfileTableCachePath a directory where decoded tables of mounted packfiles are cached between sessions,
+     *                               or {@code null} to always read tables from packfiles
+     * @see Workspace#getPackfileTableCachePath()
+     */
+    public Project(@NotNull ProjectContainer container, @Nullable Path packfileTableCachePath) {
         this.container = container;
         this.typeRegistry = new RTTITypeRegistry(container);
-        this.compressor = new Compressor(container.getCompressorPath());
-        this.packfileManager = new PackfileManager(compressor, container.getPackfileMetadataPath());
+        this.compressor = Codec.create(Compressor.Provider.NAME, container.getCompressorPath());
+        this.packfileManager = new PackfileManager(compressor, container.getPackfileMetadataPath(), false, packfileTableCachePath);
         this.persister = new ProjectPersister();
     }
 
@@ -43,7 +51,7 @@ public class Project implements Closeable {
     }
 
     @NotNull
-    public Compressor getCompressor() {
+    public Codec getCompressor() {
         return compressor;
     }
 
@@ -1,10 +1,12 @@
 package com.shade.decima.model.app;
 
 import com.shade.util.NotNull;
+import com.shade.util.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.Closeable;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.UUID;
@@ -15,6 +17,8 @@ import java.util.prefs.Preferences;
 public class Workspace implements Closeable {
     private static final Logger log = LoggerFactory.getLogger(Workspace.class);
 
+    private static final Path DEFAULT_PACKFILE_TABLE_CACHE_PATH = Path.of(System.getProperty("user.home"), ".decima-explorer", "cache", "packfiles");
+
     private final Preferences preferences;
     private final List<ProjectContainer> projects;
     private final List<ProjectChangeListener> listeners;
@@ -109,6 +113,26 @@ public class Workspace implements Closeable {
         return preferences;
     }
 
+    /**
+     * Returns a directory where decoded tables of mounted packfiles are cached between sessions.
+     * <p>
+     * The directory can be changed using the {@code packfile_table_cache_path} preference. An empty value disables the cache.
+     *
+     * @return path to the directory, or {@code null} if the cache is disabled
+     */
+    @Nullable
+    public Path getPackfileTableCachePath() {
+        final String path = preferences.get("packfile_table_cache_path", null);
+
+        if (path == null) {
+            return DEFAULT_PACKFILE_TABLE_CACHE_PATH;
+        } else if (path.isEmpty()) {
+            return null;
+        } else {
+            return Path.of(path);
+        }
+    }
+
     @Override
     public void close() {
         for (ProjectContainer container : projects) {
@@ -0,0 +1,511 @@
+package com.shade.decima.model.packfile;
+
+import com.shade.util.NotNull;
+import com.shade.util.Nullable;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A pool that bounds the number of simultaneously open file channels.
+ * <p>
+ * Channels returned by {@link #open(Path)} are lightweight handles that open the underlying file on demand.
+ * When the number of open files exceeds the capacity of the pool, least recently used files that are not
+ * being read at the moment are closed; they're reopened transparently on next access.
+ * <p>
+ * Returned channels are read-only. Their relative operations track their own position and
+ * are implemented using positional operations of the underlying channel.
+ * <p>
+ * A file that was modified or replaced after it was first opened is not reopened, since data read
+ * from it before wouldn't match its current contents; reading it fails with {@link IOException} instead.
+ */
+public class ChannelPool {
+    private final Map<PooledChannel, Entry> entries;
+    private final int capacity;
+    private final LongAdder hits = new LongAdder();
+
+    // Number of open files. Written while holding the pool, but read without it
+    private volatile int count;
+
+    private long opens;
+    private long reopens;
+    private long evictions;
+
+    public ChannelPool(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+        }
+
+        this.entries = new HashMap<>();
+        this.capacity = capacity;
+    }
+
+    /**
+     * Opens a file for reading. The file itself is opened immediately to make sure it's accessible.
+     */
+    @NotNull
+    public FileChannel open(@NotNull Path path) throws IOException {
+        final PooledChannel channel = new PooledChannel(path);
+        release(acquire(channel));
+        return channel;
+    }
+
+    @NotNull
+    public synchronized Statistics getStatistics() {
+        return new Statistics(hits.sum(), opens, reopens, evictions, count, capacity);
+    }
+
+    @Override
+    public String toString() {
+        return "ChannelPool" + getStatistics();
+    }
+
+    /**
+     * Acquires an open entry of the given channel, opening its file if needed.
+     * <p>
+     * Reads of a file that is already open only update its entry and don't lock the pool.
+     */
+    @NotNull
+    private Entry acquire(@NotNull PooledChannel channel) throws IOException {
+        if (!channel.isOpen()) {
+            throw new ClosedChannelException();
+        }
+
+        final Entry entry = channel.entry;
+
+        if (entry != null && entry.tryAcquire()) {
+            if (entry.channel.isOpen()) {
+                hits.increment();
+                return entry;
+            }
+
+            release(entry);
+        }
+
+        synchronized (this) {
+            final Entry existing = lookup(channel);
+
+            if (existing != null) {
+                hits.increment();
+                return existing;
+            }
+        }
+
+        // Opening a file may take a while, so it's done without blocking users of other channels
+        final FileChannel opened = FileChannel.open(channel.path, StandardOpenOption.READ);
+
+        try {
+            return register(channel, opened, Files.readAttributes(channel.path, BasicFileAttributes.class));
+        } catch (Throwable e) {
+            opened.close();
+            throw e;
+        }
+    }
+
+    @NotNull
+    private synchronized Entry register(@NotNull PooledChannel channel, @NotNull FileChannel opened, @NotNull BasicFileAttributes attributes) throws IOException {
+        final Entry existing = lookup(channel);
+
+        if (existing != null) {
+            // Another reader has opened the file in the meantime
+            opened.close();
+            hits.increment();
+            return existing;
+        }
+
+        channel.verify(attributes);
+
+        if (channel.opened) {
+            reopens += 1;
+        } else {
+            opens += 1;
+        }
+
+        final Entry entry = new Entry(opened);
+        entry.tryAcquire();
+
+        entries.put(channel, entry);
+        count = entries.size();
+        channel.entry = entry;
+        channel.opened = true;
+
+        trim();
+
+        return entry;
+    }
+
+    /**
+     * Acquires an open entry of the given channel, or returns {@code null} if its file is not open.
+     */
+    @Nullable
+    private Entry lookup(@NotNull PooledChannel channel) throws IOException {
+        if (!channel.isOpen()) {
+            throw new ClosedChannelException();
+        }
+
+        final Entry entry = entries.get(channel);
+
+        if (entry == null) {
+            return null;
+        }
+
+        if (!entry.channel.isOpen()) {
+            // The channel may have been closed by an interrupt of one of the readers
+            remove(channel, entry);
+            return null;
+        }
+
+        if (!entry.tryAcquire()) {
+            // Evicted entries are removed while holding the pool, so it's not expected to happen
+            throw new IllegalStateException("Entry of " + channel.path + " is evicted, but still registered");
+        }
+
+        return entry;
+    }
+
+    private void release(@NotNull Entry entry) throws IOException {
+        if (entry.release() && count > capacity) {
+            // Files that were in use while others were opened may be closed now
+            synchronized (this) {
+                trim();
+            }
+        }
+    }
+
+    private synchronized void remove(@NotNull PooledChannel channel) throws IOException {
+        final Entry entry = entries.get(channel);
+
+        if (entry != null) {
+            remove(channel, entry);
+        }
+    }
+
+    private void remove(@NotNull PooledChannel channel, @NotNull Entry entry) throws IOException {
+        entries.remove(channel);
+        count = entries.size();
+        channel.entry = null;
+        entry.channel.close();
+    }
+
+    /**
+     * Closes least recently used idle channels until the pool fits its capacity.
+     */
+    private void trim() throws IOException {
+        while (entries.size() > capacity) {
+            Map.Entry<PooledChannel, Entry> eldest = null;
+
+            for (Map.Entry<PooledChannel, Entry> candidate : entries.entrySet()) {
+                if (candidate.getValue().isIdle() && (eldest == null || candidate.getValue().used - eldest.getValue().used < 0)) {
+                    eldest = candidate;
+                }
+            }
+
+            if (eldest == null) {
+                // All files are in use
+                break;
+            }
+
+            if (eldest.getValue().tryEvict()) {
+                remove(eldest.getKey(), eldest.getValue());
+                evictions += 1;
+            }
+        }
+    }
+
+    public static record Statistics(long hits, long opens, long reopens, long evictions, int count, int capacity) {}
+
+    private static class Entry {
+        private final FileChannel channel;
+
+        // Number of readers of the channel, or -1 if it's evicted and can't be acquired anymore
+        private final AtomicInteger users = new AtomicInteger();
+
+        // Time of the last access, used to find the least recently used entry
+        private volatile long used;
+
+        private Entry(@NotNull FileChannel channel) {
+            this.channel = channel;
+        }
+
+        private boolean tryAcquire() {
+            for (int n = users.get(); n >= 0; n = users.get()) {
+                if (users.compareAndSet(n, n + 1)) {
+                    used = System.nanoTime();
+                    return true;
+                }
+            }
+
+            return false;
+        }
+
+        /**
+         * @return {@code true} if the entry became idle
+         */
+        private boolean release() {
+            return users.decrementAndGet() == 0;
+        }
+
+        private boolean isIdle() {
+            return users.get() == 0;
+        }
+
+        private boolean tryEvict() {
+            return users.compareAndSet(0, -1);
+        }
+    }
+
+    private class PooledChannel extends FileChannel {
+        private final Path path;
+        private long position;
+
+        // The entry of the open file, or null if it's not open
+        private volatile Entry entry;
+
+        // Whether the file was opened at least once. Guarded by the pool
+        private boolean opened;
+
+        // Attributes of the file at the time it was first opened. Guarded by the pool
+        private Object fileKey;
+        private long size;
+        private FileTime modified;
+
+        private PooledChannel(@NotNull Path path) {
+            this.path = path;
+        }
+
+        @Override
+        public int read(ByteBuffer dst) throws IOException {
+            synchronized (this) {
+                final int read = read(dst, position);
+
+                if (read > 0) {
+                    position += read;
+                }
+
+                return read;
+            }
+        }
+
+        @Override
+        public long read(ByteBuffer[] dsts, int offset, int length) throws IOException {
+            long total = 0;
+
+            for (int i = offset; i < offset + length; i++) {
+                final int read = read(dsts[i]);
+
+                if (read < 0) {
+                    return total > 0 ? total : -1;
+                }
+
+                total += read;
+
+                if (dsts[i].hasRemaining()) {
+                    break;
+                }
+            }
+
+            return total;
+        }
+
+        @Override
+        public int read(ByteBuffer dst, long position) throws IOException {
+            final Entry entry = acquire(this);
+
+            try {
+                return entry.channel.read(dst, position);
+            } finally {
+                release(entry);
+            }
+        }
+
+        @Override
+        public synchronized long position() throws IOException {
+            ensureOpen();
+            return position;
+        }
+
+        @Override
+        public synchronized FileChannel position(long newPosition) throws IOException {
+            ensureOpen();
+
+            if (newPosition < 0) {
+                throw new IllegalArgumentException("Negative position: " + newPosition);
+            }
+
+            position = newPosition;
+            return this;
+        }
+
+        @Override
+        public long size() throws IOException {
+            final Entry entry = acquire(this);
+
+            try {
+                return entry.channel.size();
+            } finally {
+                release(entry);
+            }
+        }
+
+        @Override
+        public long transferTo(long position, long count, WritableByteChannel target) throws IOException {
+            final Entry entry = acquire(this);
+
+            try {
+                return entry.channel.transferTo(position, count, target);
+            } finally {
+                release(entry);
+            }
+        }
+
+        @Override
+        public MappedByteBuffer map(MapMode mode, long position, long size) throws IOException {
+            if (mode != MapMode.READ_ONLY) {
+                throw new NonWritableChannelException();
+            }
+
+            final Entry entry = acquire(this);
+
+            try {
+                // Mappings stay valid after the channel is closed
+                return entry.channel.map(mode, position, size);
+            } finally {
+                release(entry);
+            }
+        }
+
+        @Override
+        public FileLock lock(long position, long size, boolean shared) throws IOException {
+            final Entry entry = acquire(this);
+
+            try {
+                return new PooledLock(this, entry, entry.channel.lock(position, size, shared));
+            } catch (Throwable e) {
+                release(entry);
+                throw e;
+            }
+        }
+
+        @Override
+        public FileLock tryLock(long position, long size, boolean shared) throws IOException {
+            final Entry entry = acquire(this);
+
+            try {
+                final FileLock lock = entry.channel.tryLock(position, size, shared);
+
+                if (lock == null) {
+                    release(entry);
+                    return null;
+                }
+
+                return new PooledLock(this, entry, lock);
+            } catch (Throwable e) {
+                release(entry);
+                throw e;
+            }
+        }
+
+        @Override
+        public int write(ByteBuffer src) {
+            throw new NonWritableChannelException();
+        }
+
+        @Override
+        public long write(ByteBuffer[] srcs, int offset, int length) {
+            throw new NonWritableChannelException();
+        }
+
+        @Override
+        public int write(ByteBuffer src, long position) {
+            throw new NonWritableChannelException();
+        }
+
+        @Override
+        public FileChannel truncate(long size) {
+            throw new NonWritableChannelException();
+        }
+
+        @Override
+        public long transferFrom(ReadableByteChannel src, long position, long count) {
+            throw new NonWritableChannelException();
+        }
+
+        @Override
+        public void force(boolean metaData) {
+            // nothing to force, the channel is read-only
+        }
+
+        @Override
+        protected void implCloseChannel() throws IOException {
+            remove(this);
+        }
+
+        /**
+         * Makes sure the file is the same as when it was first opened; a reopened file may have been replaced or modified.
+         */
+        private void verify(@NotNull BasicFileAttributes attributes) throws IOException {
+            if (!opened) {
+                fileKey = attributes.fileKey();
+                size = attributes.size();
+                modified = attributes.lastModifiedTime();
+            } else if (!Objects.equals(fileKey, attributes.fileKey()) || size != attributes.size() || !modified.equals(attributes.lastModifiedTime())) {
+                throw new IOException("File " + path + " has changed since it was opened");
+            }
+        }
+
+        private void ensureOpen() throws IOException {
+            if (!isOpen()) {
+                throw new ClosedChannelException();
+            }
+        }
+    }
+
+    /**
+     * A lock of the underlying channel. The underlying channel is kept open until the lock is released.
+     */
+    private class PooledLock extends FileLock {
+        private final Entry entry;
+        private final FileLock lock;
+        private boolean released;
+
+        private PooledLock(@NotNull PooledChannel channel, @NotNull Entry entry, @NotNull FileLock lock) {
+            super(channel, lock.position(), lock.size(), lock.isShared());
+            this.entry = entry;
+            this.lock = lock;
+        }
+
+        @Override
+        public boolean isValid() {
+            return lock.isValid();
+        }
+
+        @Override
+        public void release() throws IOException {
+            synchronized (this) {
+                if (released) {
+                    return;
+                }
+
+                released = true;
+            }
+
+            try {
+                lock.release();
+            } finally {
+                ChannelPool.this.release(entry);
+            }
+        }
+    }
+}
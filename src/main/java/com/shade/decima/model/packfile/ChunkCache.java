@@ -0,0 +1,109 @@
+package com.shade.decima.model.packfile;
+
+import com.shade.util.NotNull;
+import com.shade.util.Nullable;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A cache of decompressed chunks shared between all readers of packfiles of a single {@link PackfileManager}.
+ * <p>
+ * Random-access readers, such as {@link Packfile#newChannel(long)} and {@link Packfile#read(long, long, int)}, and
+ * extraction of small files use the cache. Sequential and bulk readers, as well as extraction of large files, read each
+ * chunk once, so they bypass it and don't evict chunks that are still in use.
+ * <p>
+ * Chunks are identified by their packfile and the offset of their decompressed data.
+ * The cache is bounded by the total size of cached chunks; least recently used chunks are evicted first.
+ */
+public class ChunkCache {
+    private final Map<Key, byte[]> entries;
+    private final long capacity;
+
+    private long size;
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    public ChunkCache(long capacity) {
+        this.entries = new LinkedHashMap<>(16, 0.75f, true);
+        this.capacity = capacity;
+    }
+
+    /**
+     * Returns decompressed data of a chunk, or {@code null} if it's not cached.
+     * <p>
+     * The returned array must not be modified.
+     */
+    @Nullable
+    public synchronized byte[] get(@NotNull Packfile packfile, long offset) {
+        final byte[] data = entries.get(new Key(packfile, offset));
+
+        if (data != null) {
+            hits += 1;
+        } else {
+            misses += 1;
+        }
+
+        return data;
+    }
+
+    /**
+     * Puts decompressed data of a chunk into the cache, evicting least recently used chunks if necessary.
+     * <p>
+     * The cache takes ownership of the given array, so it must not be modified afterwards.
+     */
+    public synchronized void put(@NotNull Packfile packfile, long offset, @NotNull byte[] data) {
+        if (data.length > capacity) {
+            return;
+        }
+
+        final byte[] previous = entries.put(new Key(packfile, offset), data);
+
+        if (previous != null) {
+            size -= previous.length;
+        }
+
+        size += data.length;
+
+        for (Iterator<byte[]> it = entries.values().iterator(); size > capacity && it.hasNext(); ) {
+            size -= it.next().length;
+            evictions += 1;
+            it.remove();
+        }
+    }
+
+    /**
+     * Removes all chunks of the given packfile from the cache.
+     */
+    public synchronized void invalidate(@NotNull Packfile packfile) {
+        for (Iterator<Map.Entry<Key, byte[]>> it = entries.entrySet().iterator(); it.hasNext(); ) {
+            final Map.Entry<Key, byte[]> entry = it.next();
+
+            if (entry.getKey().packfile == packfile) {
+                size -= entry.getValue().length;
+                it.remove();
+            }
+        }
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+        size = 0;
+    }
+
+    @NotNull
+    public synchronized Statistics getStatistics() {
+        return new Statistics(hits, misses, evictions, entries.size(), size, capacity);
+    }
+
+    @Override
+    public String toString() {
+        return "ChunkCache" + getStatistics();
+    }
+
+    public static record Statistics(long hits, long misses, long evictions, int count, long size, long capacity) {}
+
+    private static record Key(@NotNull Packfile packfile, long offset) {}
+}
@@ -1,54 +1,258 @@
 package com.shade.decima.model.packfile;
 
+import com.shade.decima.model.util.BufferPool;
+import com.shade.decima.model.util.Codec;
 import com.shade.decima.model.util.Compressor;
 import com.shade.platform.model.util.IOUtils;
 import com.shade.util.NotNull;
 import com.shade.util.Nullable;
 
 import java.io.Closeable;
+import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.NonWritableChannelException;
 import java.nio.channels.SeekableByteChannel;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Comparator;
+import java.util.List;
 import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 public class Packfile extends PackfileBase implements Closeable, Comparable<Packfile> {
+    /**
+     * Size of a single memory-mapped window. Must be less than {@link Integer#MAX_VALUE}
+     * so that a window extended by the size of a single compressed chunk can still be mapped.
+     */
+    private static final long MAPPING_WINDOW_SIZE = 1L << 30;
+
+    /**
+     * A pool of scratch buffers used by input streams for compressed and decompressed chunk data.
+     */
+    private static final BufferPool BUFFER_POOL = new BufferPool(16);
+
+    /**
+     * Minimum number of chunks a file must span to be extracted in parallel.
+     */
+    private static final int PARALLEL_EXTRACT_THRESHOLD = 4;
+
+    /**
+     * An executor used for decompressing chunks of a single file in parallel.
+     */
+    static final ExecutorService EXTRACT_EXECUTOR = Executors.newFixedThreadPool(
+        Runtime.getRuntime().availableProcessors(),
+        runnable -> {
+            final Thread thread = new Thread(runnable, "Packfile extractor");
+            thread.setDaemon(true);
+            return thread;
+        }
+    );
+
     private final SeekableByteChannel channel;
-    private final Compressor compressor;
+    private final Codec compressor;
     private final PackfileInfo info;
     private final Path path;
 
-    public Packfile(@NotNull SeekableByteChannel channel, @NotNull Compressor compressor, @Nullable PackfileInfo info, @NotNull Path path) throws IOException {
+    /**
+     * Memory-mapped windows of the archive, or {@code null} if the archive is not mapped.
+     * <p>
+     * Each window starts at a multiple of {@link #MAPPING_WINDOW_SIZE} and overlaps
+     * the next one by the maximum size of a compressed chunk, so any chunk can be sliced
+     * from a single window.
+     */
+    private final MappedByteBuffer[] mappings;
+    private final ChunkCache cache;
+    private final PackfileTableCache tableCache;
+
+    /**
+     * Hashes of files loaded from {@link #tableCache}, or {@code null} if the tables were loaded eagerly.
+     */
+    private final long[] hashes;
+
+    public Packfile(@NotNull SeekableByteChannel channel, @NotNull Codec compressor, @Nullable PackfileInfo info, @NotNull Path path) throws IOException {
+        this(channel, compressor, info, path, false, null);
+    }
+
+    /**
+     * Creates a new packfile.
+     *
+     * @param mapped whether the archive should be memory-mapped. Only applicable if {@code channel} is a {@link FileChannel}.
+     *               If enabled, compressed chunks are read directly from the mapped memory without any locking or copying.
+     * @param cache  a cache for decompressed chunks, or {@code null} to decompress chunks every time they are read
+     */
+    public Packfile(
+        @NotNull SeekableByteChannel channel,
+        @NotNull Codec compressor,
+        @Nullable PackfileInfo info,
+        @NotNull Path path,
+        boolean mapped,
+        @Nullable ChunkCache cache
+    ) throws IOException {
+        this(channel, compressor, info, path, mapped, cache, null);
+    }
+
+    /**
+     * Creates a new packfile.
+     * <p>
+     * If {@code tableCache} contains valid tables of this packfile, the packfile is loaded lazily:
+     * only the header and hashes of files are read right away, and the tables are loaded on first access to them.
+     * Otherwise, the tables are read and cached immediately.
+     * <p>
+     * Since tables of a lazily loaded packfile may fail to load long after it was created, methods that
+     * access them without performing I/O report such failures as {@link java.io.UncheckedIOException}.
+     * See {@link #load()}.
+     *
+     * @param tableCache a cache of decoded tables, or {@code null} to always read tables from the archive
+     * @see #Packfile(SeekableByteChannel, Codec, PackfileInfo, Path, boolean, ChunkCache)
+     */
+    public Packfile(
+        @NotNull SeekableByteChannel channel,
+        @NotNull Codec compressor,
+        @Nullable PackfileInfo info,
+        @NotNull Path path,
+        boolean mapped,
+        @Nullable ChunkCache cache,
+        @Nullable PackfileTableCache tableCache
+    ) throws IOException {
         super(Header.read(IOUtils.readExact(channel, Header.BYTES)));
 
         this.channel = channel;
         this.compressor = compressor;
         this.info = info;
         this.path = path;
+        this.cache = cache;
+        this.tableCache = tableCache;
+        this.hashes = tableCache != null ? tableCache.loadHashes(path, Files.readAttributes(path, BasicFileAttributes.class), header) : null;
 
-        for (long i = 0; i < header.fileEntryCount(); i++) {
-            final ByteBuffer buffer = IOUtils.readExact(channel, FileEntry.BYTES);
-            final FileEntry entry = FileEntry.read(buffer, header.isEncrypted());
-            files.put(entry.hash(), entry);
+        if (hashes == null) {
+            load();
         }
 
-        for (long i = 0; i < header.chunkEntryCount(); i++) {
-            final ByteBuffer buffer = IOUtils.readExact(channel, ChunkEntry.BYTES);
-            final ChunkEntry entry = ChunkEntry.read(buffer, header.isEncrypted());
-            chunks.put(entry.decompressed().offset(), entry);
+        if (mapped && channel instanceof FileChannel fc) {
+            this.mappings = map(fc, Compressor.getCompressedSize(header.chunkEntrySize()));
+        } else {
+            this.mappings = null;
         }
     }
 
     @NotNull
     public byte[] extract(@NotNull String path) throws IOException {
-        return newInputStream(path).readAllBytes();
+        return extract(getPathHash(getNormalizedPath(path)));
     }
 
+    /**
+     * Extracts contents of a file.
+     * <p>
+     * Small files often share chunks with their neighbours and tend to be extracted repeatedly,
+     * so their chunks are looked up in and put into the chunk cache. Files that span at least
+     * {@link #PARALLEL_EXTRACT_THRESHOLD} chunks are decompressed in parallel and bypass the cache,
+     * so they don't evict chunks that are still in use.
+     */
     @NotNull
     public byte[] extract(long hash) throws IOException {
-        return newInputStream(hash).readAllBytes();
+        load();
+
+        final FileEntry entry = getFileEntryChecked(hash);
+        final ChunkEntry[] chunks = getChunkEntries(entry.span()).toArray(ChunkEntry[]::new);
+
+        return extract(hash, entry.span(), chunks, chunks.length < PARALLEL_EXTRACT_THRESHOLD);
+    }
+
+    @NotNull
+    public byte[] read(@NotNull String path, long offset, int length) throws IOException {
+        return read(getPathHash(getNormalizedPath(path)), offset, length);
+    }
+
+    /**
+     * Reads a range of contents of a file.
+     * <p>
+     * Only chunks that overlap with the range are decompressed, so it's preferable
+     * to {@link #extract(long)} when only a part of a large file is needed. Decompressed
+     * chunks are put into the chunk cache, as neighbouring ranges are likely to be read too.
+     *
+     * @param offset offset of the range within the file
+     * @param length length of the range
+     * @throws IndexOutOfBoundsException if the range is out of bounds of the file
+     */
+    @NotNull
+    public byte[] read(long hash, long offset, int length) throws IOException {
+        load();
+
+        final FileEntry entry = getFileEntryChecked(hash);
+
+        Objects.checkFromIndexSize(offset, length, entry.span().size());
+
+        if (length == 0) {
+            return new byte[0];
+        }
+
+        final Span span = new Span(entry.span().offset() + offset, length, 0);
+        final ChunkEntry[] chunks = getChunkEntries(span).toArray(ChunkEntry[]::new);
+
+        return extract(hash, span, chunks, true);
+    }
+
+    /**
+     * Decompresses the given chunks and copies their data that overlaps with {@code span} into a new array.
+     * <p>
+     * Spans that overlap with at least {@link #PARALLEL_EXTRACT_THRESHOLD} chunks are decompressed in parallel.
+     *
+     * @param cached whether the chunk cache should be used
+     */
+    @NotNull
+    private byte[] extract(long hash, @NotNull Span span, @NotNull ChunkEntry[] chunks, boolean cached) throws IOException {
+        final byte[] result = new byte[span.size()];
+
+        if (chunks.length < PARALLEL_EXTRACT_THRESHOLD) {
+            for (ChunkEntry chunk : chunks) {
+                extract(span, chunk, result, cached);
+            }
+
+            return result;
+        }
+        final List<Future<?>> futures = new ArrayList<>(chunks.length);
+
+        for (ChunkEntry chunk : chunks) {
+            futures.add(EXTRACT_EXECUTOR.submit(() -> {
+                extract(span, chunk, result, cached);
+                return null;
+            }));
+        }
+
+        try {
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while extracting 0x" + Long.toHexString(hash));
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException io) {
+                throw io;
+            }
+            throw new IOException("Error extracting 0x" + Long.toHexString(hash), e.getCause());
+        } finally {
+            for (Future<?> future : futures) {
+                future.cancel(false);
+            }
+        }
+
+        return result;
     }
 
     @NotNull
@@ -58,13 +262,97 @@ public class Packfile extends PackfileBase implements Closeable, Comparable<Pack
 
     @NotNull
     public InputStream newInputStream(long hash) {
-        final FileEntry entry = getFileEntry(hash);
+        return newInputStream(hash, 0);
+    }
 
-        if (entry == null) {
-            throw new IllegalArgumentException("Can't find path 0x" + Long.toHexString(hash) + " in this archive");
+    /**
+     * Opens a stream for contents of a file.
+     * <p>
+     * The stream reads each chunk exactly once, so it bypasses the chunk cache and
+     * decompresses chunks into pooled buffers that are reused once the stream is closed.
+     *
+     * @param readAhead number of chunks following the one being read that are decompressed in background,
+     *                  so decompression overlaps with consumption of the data. {@code 0} disables read-ahead
+     */
+    @NotNull
+    public InputStream newInputStream(long hash, int readAhead) {
+        if (readAhead < 0) {
+            throw new IllegalArgumentException("Read-ahead must not be negative: " + readAhead);
         }
 
-        return new PackfileInputStream(entry);
+        final FileEntry entry = getFileEntryChecked(hash);
+        return new PackfileInputStream(entry, getChunkEntries(entry.span()).toArray(ChunkEntry[]::new), readAhead);
+    }
+
+    @NotNull
+    public SeekableByteChannel newChannel(@NotNull String path) {
+        return newChannel(getPathHash(getNormalizedPath(path)));
+    }
+
+    /**
+     * Opens a read-only channel for contents of a file.
+     * <p>
+     * Chunks are decompressed on demand as the channel is read, so only chunks that
+     * contain data at positions that were actually read are decompressed.
+     */
+    @NotNull
+    public SeekableByteChannel newChannel(long hash) {
+        return new PackfileChannel(getFileEntryChecked(hash));
+    }
+
+    /**
+     * Reads raw data of the given chunk into {@code dst}. The data is not decompressed nor decrypted.
+     */
+    public void readChunk(@NotNull ChunkEntry chunk, @NotNull ByteBuffer dst) throws IOException {
+        readData(chunk.compressed(), dst.slice(dst.position(), chunk.compressed().size()));
+        dst.position(dst.position() + chunk.compressed().size());
+    }
+
+    /**
+     * Reads raw data starting at the given offset into {@code dst}, filling its remaining space.
+     */
+    void readRaw(long offset, @NotNull ByteBuffer dst) throws IOException {
+        readData(new Span(offset, dst.remaining(), 0), dst.slice());
+        dst.position(dst.limit());
+    }
+
+    /**
+     * Returns decompressed data of the given chunk if it's present in the chunk cache.
+     *
+     * @return an array containing decompressed data, or {@code null} if there's none. Must not be modified
+     */
+    @Nullable
+    byte[] getCachedChunkData(@NotNull ChunkEntry chunk) {
+        return cache != null ? cache.get(this, chunk.decompressed().offset()) : null;
+    }
+
+    /**
+     * Decompresses a chunk whose raw data was read separately, e.g. as a part of a larger read.
+     * Decompressed data is not put into the chunk cache, as such reads are meant for bulk extraction.
+     *
+     * @param raw raw data of the chunk. Its contents are not modified
+     * @return an array containing decompressed data
+     */
+    @NotNull
+    byte[] decompressChunk(@NotNull ChunkEntry chunk, @NotNull ByteBuffer raw) throws IOException {
+        final byte[] src = BUFFER_POOL.acquire(Compressor.getCompressedSize(header.chunkEntrySize()));
+        final byte[] dst = new byte[chunk.decompressed().size()];
+
+        try {
+            final ByteBuffer buffer = ByteBuffer.wrap(src, 0, chunk.compressed().size());
+
+            buffer.put(raw.slice(raw.position(), chunk.compressed().size()));
+
+            if (header.isEncrypted()) {
+                getTables().chunks().swizzle(chunk, buffer.flip());
+            }
+
+            compressor.decompress(src, chunk.compressed().size(), dst, dst.length);
+        } finally {
+            BUFFER_POOL.release(src);
+        }
+
+        return dst;
     }
 
     @NotNull
@@ -72,6 +360,10 @@ public class Packfile extends PackfileBase implements Closeable, Comparable<Pack
         return path;
     }
 
+    public boolean isMapped() {
+        return mappings != null;
+    }
+
     @NotNull
     public String getName() {
         return info != null ? info.getName() : path.getFileName().toString();
@@ -84,6 +376,10 @@ public class Packfile extends PackfileBase implements Closeable, Comparable<Pack
 
     @Override
     public void close() throws IOException {
+        if (cache != null) {
+            cache.invalidate(this);
+        }
+
         channel.close();
     }
 
@@ -92,27 +388,264 @@ public class Packfile extends PackfileBase implements Closeable, Comparable<Pack
         return Comparator.comparing(Path::getFileName).compare(path, o.path);
     }
 
+    @NotNull
+    @Override
+    long[] getFileHashes() {
+        return hashes != null ? hashes : super.getFileHashes();
+    }
+
+    @NotNull
+    @Override
+    protected Tables loadTables() throws IOException {
+        if (tableCache == null) {
+            return readTables(channel, header);
+        }
+
+        final BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+        final Tables cached = tableCache.load(path, attributes, header);
+
+        if (cached != null) {
+            return cached;
+        }
+
+        final Tables tables = readTables(channel, header);
+        tableCache.store(path, attributes, header, tables);
+
+        return tables;
+    }
+
+    @NotNull
+    private static Tables readTables(@NotNull SeekableByteChannel channel, @NotNull Header header) throws IOException {
+        synchronized (channel) {
+            channel.position(Header.BYTES);
+
+            // Tables follow the header, so they're read in this exact order
+            final FileTable files = new FileTable(readFileEntries(channel, header));
+            final ChunkTable chunks = new ChunkTable(readChunkEntries(channel, header), header.isEncrypted());
+
+            return new Tables(files, chunks);
+        }
+    }
+
+    @NotNull
+    private static FileEntry[] readFileEntries(@NotNull SeekableByteChannel channel, @NotNull Header header) throws IOException {
+        final FileEntry[] entries = new FileEntry[Math.toIntExact(header.fileEntryCount())];
+        final ByteBuffer buffer = readTable(channel, entries.length, FileEntry.BYTES);
+
+        decodeTable(entries.length, index -> {
+            final ByteBuffer slice = buffer.slice(index * FileEntry.BYTES, FileEntry.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            entries[index] = FileEntry.read(slice, header.isEncrypted());
+        });
+
+        return entries;
+    }
+
+    @NotNull
+    private static ChunkEntry[] readChunkEntries(@NotNull SeekableByteChannel channel, @NotNull Header header) throws IOException {
+        final ChunkEntry[] entries = new ChunkEntry[header.chunkEntryCount()];
+        final ByteBuffer buffer = readTable(channel, entries.length, ChunkEntry.BYTES);
+
+        decodeTable(entries.length, index -> {
+            final ByteBuffer slice = buffer.slice(index * ChunkEntry.BYTES, ChunkEntry.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            entries[index] = ChunkEntry.read(slice, header.isEncrypted());
+        });
+
+        return entries;
+    }
+
+    /**
+     * Reads a whole table of records with a single bulk read rather than one read per record.
+     */
+    @NotNull
+    private static ByteBuffer readTable(@NotNull SeekableByteChannel channel, int count, int size) throws IOException {
+        final ByteBuffer buffer = ByteBuffer.allocate(Math.multiplyExact(count, size));
+
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) {
+                throw new EOFException("Unexpected end of file while reading packfile tables");
+            }
+        }
+
+        return buffer;
+    }
+
+    @NotNull
+    private FileEntry getFileEntryChecked(long hash) {
+        final FileEntry entry = getFileEntry(hash);
+
+        if (entry == null) {
+            throw new IllegalArgumentException("Can't find path 0x" + Long.toHexString(hash) + " in this archive");
+        }
+
+        return entry;
+    }
+
+    /**
+     * Decompresses the given chunk and copies the part that overlaps with {@code span} into {@code dst}.
+     *
+     * @param cached whether the chunk cache should be used
+     */
+    private void extract(@NotNull Span span, @NotNull ChunkEntry chunk, @NotNull byte[] dst, boolean cached) throws IOException {
+        final byte[] srcbuf = BUFFER_POOL.acquire(Compressor.getCompressedSize(header.chunkEntrySize()));
+        final byte[] dstbuf = cache == null || !cached ? BUFFER_POOL.acquire(header.chunkEntrySize()) : null;
+
+        try {
+            final byte[] data = cached ? getChunkData(chunk, srcbuf, dstbuf) : decompress(chunk, srcbuf, dstbuf);
+            final long start = Math.max(span.offset(), chunk.decompressed().offset());
+            final long end = Math.min(span.offset() + span.size(), chunk.decompressed().offset() + chunk.decompressed().size());
+
+            if (start < end) {
+                System.arraycopy(data, (int) (start - chunk.decompressed().offset()), dst, (int) (start - span.offset()), (int) (end - start));
+            }
+        } finally {
+            BUFFER_POOL.release(srcbuf);
+
+            if (dstbuf != null) {
+                BUFFER_POOL.release(dstbuf);
+            }
+        }
+    }
+
+    /**
+     * Returns decompressed data of the given chunk.
+     * <p>
+     * If the chunk cache is enabled, the data is looked up in the cache first, and
+     * freshly decompressed data is put there; otherwise, {@code dst} is used as the output.
+     *
+     * @param src a scratch buffer that is large enough to hold the compressed data
+     * @param dst a buffer that is large enough to hold the decompressed data. May be {@code null} if the cache is enabled
+     * @return an array containing decompressed data. Must not be modified
+     */
+    @NotNull
+    private byte[] getChunkData(@NotNull ChunkEntry chunk, @NotNull byte[] src, @Nullable byte[] dst) throws IOException {
+        if (cache == null) {
+            return decompress(chunk, src, Objects.requireNonNull(dst));
+        }
+
+        byte[] data = cache.get(this, chunk.decompressed().offset());
+
+        if (data == null) {
+            data = new byte[chunk.decompressed().size()];
+            decompress(chunk, src, data);
+            cache.put(this, chunk.decompressed().offset(), data);
+        }
+
+        return data;
+    }
+
+    /**
+     * Decompresses the given chunk into {@code dst}, bypassing the chunk cache.
+     *
+     * @return {@code dst}
+     */
+    @NotNull
+    private byte[] decompress(@NotNull ChunkEntry chunk, @NotNull byte[] src, @NotNull byte[] dst) throws IOException {
+        if (mappings != null && !header.isEncrypted()) {
+            compressor.decompress(getMappedSlice(chunk.compressed()), dst, chunk.decompressed().size());
+            return dst;
+        }
+
+        final ByteBuffer buffer = ByteBuffer.wrap(src, 0, chunk.compressed().size());
+
+        readData(chunk.compressed(), buffer.slice());
+
+        if (header.isEncrypted()) {
+            getTables().chunks().swizzle(chunk, buffer.slice());
+        }
+
+        compressor.decompress(src, chunk.compressed().size(), dst, chunk.decompressed().size());
+
+        return dst;
+    }
+
+    /**
+     * Reads data of the given span into {@code dst}.
+     * <p>
+     * Doesn't change the position of the underlying channel if it's a {@link FileChannel},
+     * allowing concurrent readers to proceed without any locking.
+     */
+    private void readData(@NotNull Span span, @NotNull ByteBuffer dst) throws IOException {
+        if (mappings != null) {
+            dst.put(getMappedSlice(span));
+        } else if (channel instanceof FileChannel fc) {
+            long position = span.offset();
+
+            while (dst.hasRemaining()) {
+                final int read = fc.read(dst, position);
+
+                if (read < 0) {
+                    throw new EOFException("Unexpected end of file at " + position);
+                }
+
+                position += read;
+            }
+        } else {
+            synchronized (channel) {
+                channel.position(span.offset());
+
+                while (dst.hasRemaining()) {
+                    if (channel.read(dst) < 0) {
+                        throw new EOFException("Unexpected end of file at " + channel.position());
+                    }
+                }
+            }
+        }
+    }
+
+    @NotNull
+    private ByteBuffer getMappedSlice(@NotNull Span span) {
+        final MappedByteBuffer mapping = mappings[(int) (span.offset() / MAPPING_WINDOW_SIZE)];
+        return mapping.slice((int) (span.offset() % MAPPING_WINDOW_SIZE), span.size());
+    }
+
+    @NotNull
+    private static MappedByteBuffer[] map(@NotNull FileChannel channel, int overlap) throws IOException {
+        final long size = channel.size();
+        final MappedByteBuffer[] mappings = new MappedByteBuffer[(int) Math.max(1, (size + MAPPING_WINDOW_SIZE - 1) / MAPPING_WINDOW_SIZE)];
+
+        for (int i = 0; i < mappings.length; i++) {
+            final long offset = i * MAPPING_WINDOW_SIZE;
+            final long length = Math.min(size - offset, MAPPING_WINDOW_SIZE + overlap);
+
+            mappings[i] = channel.map(FileChannel.MapMode.READ_ONLY, offset, length);
+        }
+
+        return mappings;
+    }
+
     private class PackfileInputStream extends InputStream {
         private final FileEntry file;
         private final ChunkEntry[] chunks;
-        private final byte[] srcbuf;
-        private final byte[] dstbuf;
+        private final int readAhead;
+
+        /**
+         * Chunks that are being decompressed in background, in order, starting with the chunk at {@link #chunkidx}.
+         */
+        private final Queue<PendingChunk> pending = new ArrayDeque<>();
 
+        private byte[] srcbuf;
+        private byte[] dstbuf;
+
+        private byte[] data;
         private int dataoff;
         private int datalen;
         private int chunkidx;
 
-        public PackfileInputStream(@NotNull FileEntry file) {
+        public PackfileInputStream(@NotNull FileEntry file, @NotNull ChunkEntry[] chunks, int readAhead) {
             this.file = file;
-            this.chunks = getChunkEntries(file.span()).values().toArray(ChunkEntry[]::new);
-            this.srcbuf = new byte[Compressor.getCompressedSize(header.chunkEntrySize())];
-            this.dstbuf = new byte[header.chunkEntrySize()];
+            this.chunks = chunks;
+            this.readAhead = readAhead;
         }
 
         @Override
         public int read() throws IOException {
-            final byte[] buf = new byte[1];
-            return read(buf, 0, 1) > 0 ? buf[0] : -1;
+            if (data == null || dataoff >= datalen) {
+                if (!nextChunk()) {
+                    return -1;
+                }
+            }
+
+            return data[dataoff++] & 0xff;
         }
 
         @Override
@@ -137,50 +670,314 @@ public class Packfile extends PackfileBase implements Closeable, Comparable<Pack
             int read = 0;
 
             while (read < len) {
-                if (datalen < 0) {
-                    if (chunkidx >= chunks.length) {
+                if (data == null || dataoff >= datalen) {
+                    if (!nextChunk()) {
                         break;
                     }
+                }
 
-                    final ChunkEntry chunk = chunks[chunkidx];
-                    final ByteBuffer buffer = ByteBuffer.wrap(srcbuf, 0, chunk.compressed().size());
+                final int length = Math.min(datalen - dataoff, len - read);
 
-                    synchronized (channel) {
-                        channel.position(chunk.compressed().offset());
-                        channel.read(buffer.slice());
-                    }
+                System.arraycopy(data, dataoff, buf, off + read, length);
+                read += length;
+                dataoff += length;
+            }
 
-                    if (header.isEncrypted()) {
-                        chunk.swizzle(buffer.slice());
-                    }
+            return read > 0 ? read : -1;
+        }
+
+        @Override
+        public void close() {
+            if (srcbuf != null) {
+                BUFFER_POOL.release(srcbuf);
+                srcbuf = null;
+            }
+
+            if (dstbuf != null) {
+                BUFFER_POOL.release(dstbuf);
+                dstbuf = null;
+            }
+
+            if (data != null && readAhead > 0) {
+                BUFFER_POOL.release(data);
+            }
+
+            for (PendingChunk chunk : pending) {
+                chunk.discard();
+            }
+
+            pending.clear();
+            data = null;
+            chunkidx = chunks.length;
+        }
 
-                    compressor.decompress(srcbuf, chunk.compressed().size(), dstbuf, chunk.decompressed().size());
-                    dataoff = 0;
-                    datalen = chunk.decompressed().size();
+        private boolean nextChunk() throws IOException {
+            while (chunkidx < chunks.length) {
+                final ChunkEntry chunk = chunks[chunkidx];
 
-                    if (chunkidx == 0) {
-                        dataoff = (int) (file.span().offset() - chunk.decompressed().offset());
+                if (readAhead > 0) {
+                    data = nextChunkAhead();
+                } else {
+                    if (srcbuf == null) {
+                        srcbuf = BUFFER_POOL.acquire(Compressor.getCompressedSize(header.chunkEntrySize()));
                     }
 
-                    if (chunkidx == chunks.length - 1) {
-                        datalen = (int) (file.span().size() - chunk.decompressed().offset() + file.span().offset());
+                    if (dstbuf == null) {
+                        dstbuf = BUFFER_POOL.acquire(header.chunkEntrySize());
                     }
 
-                    chunkidx += 1;
+                    data = decompress(chunk, srcbuf, dstbuf);
                 }
 
-                final int length = Math.min(datalen - dataoff, len - read);
+                dataoff = 0;
+                datalen = chunk.decompressed().size();
+
+                if (chunkidx == 0) {
+                    dataoff = (int) (file.span().offset() - chunk.decompressed().offset());
+                }
+
+                if (chunkidx == chunks.length - 1) {
+                    datalen = (int) (file.span().size() - chunk.decompressed().offset() + file.span().offset());
+                }
+
+                chunkidx += 1;
+
+                if (dataoff < datalen) {
+                    return true;
+                }
+            }
+
+            close();
+
+            return false;
+        }
 
-                if (length > 0) {
-                    System.arraycopy(dstbuf, dataoff, buf, off + read, length);
-                    read += length;
-                    dataoff += length;
+        /**
+         * Waits for the chunk at {@link #chunkidx} to be decompressed, scheduling decompression of following chunks.
+         */
+        @NotNull
+        private byte[] nextChunkAhead() throws IOException {
+            // Each chunk decompressed in background gets its own output buffer. The buffer
+            // of the previous chunk is no longer needed, so it's used for the next one
+            if (data != null) {
+                if (dstbuf == null) {
+                    dstbuf = data;
                 } else {
-                    datalen = -1;
+                    BUFFER_POOL.release(data);
                 }
+
+                data = null;
             }
 
-            return read > 0 ? read : -1;
+            while (pending.size() <= readAhead && chunkidx + pending.size() < chunks.length) {
+                final ChunkEntry chunk = chunks[chunkidx + pending.size()];
+                final byte[] dst = Objects.requireNonNullElseGet(dstbuf, () -> BUFFER_POOL.acquire(header.chunkEntrySize()));
+
+                dstbuf = null;
+                pending.offer(new PendingChunk(chunk, dst));
+            }
+
+            // If waiting fails, the chunk is left pending, so its buffer is reclaimed when the stream is closed
+            try {
+                final byte[] result = pending.element().get();
+                pending.remove();
+                return result;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while reading 0x" + Long.toHexString(file.hash()));
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof IOException io) {
+                    throw io;
+                }
+                throw new IOException("Error reading 0x" + Long.toHexString(file.hash()), e.getCause());
+            }
+        }
+    }
+
+    /**
+     * A chunk that is decompressed in background into a pooled buffer.
+     * <p>
+     * The buffer is owned by whoever is waiting for the chunk, or by the pool once the chunk is discarded.
+     */
+    private class PendingChunk {
+        private final byte[] buffer;
+        private final AtomicBoolean started = new AtomicBoolean();
+        private final Future<?> future;
+
+        public PendingChunk(@NotNull ChunkEntry chunk, @NotNull byte[] buffer) {
+            this.buffer = buffer;
+            this.future = EXTRACT_EXECUTOR.submit(() -> {
+                if (!started.compareAndSet(false, true)) {
+                    return null;
+                }
+
+                final byte[] src = BUFFER_POOL.acquire(Compressor.getCompressedSize(header.chunkEntrySize()));
+
+                try {
+                    return decompress(chunk, src, buffer);
+                } finally {
+                    BUFFER_POOL.release(src);
+                }
+            });
+        }
+
+        @NotNull
+        public byte[] get() throws InterruptedException, ExecutionException {
+            future.get();
+            return buffer;
+        }
+
+        /**
+         * Returns the buffer to the pool. If decompression is already in progress, waits for it to finish first,
+         * as the buffer can't be reused while it's being written to.
+         */
+        public void discard() {
+            if (started.compareAndSet(false, true)) {
+                future.cancel(false);
+                BUFFER_POOL.release(buffer);
+                return;
+            }
+
+            try {
+                future.get();
+            } catch (InterruptedException e) {
+                // Leave the buffer to the garbage collector rather than wait any longer
+                Thread.currentThread().interrupt();
+                return;
+            } catch (ExecutionException ignored) {
+                // The stream is being closed, so there's no one to report the failure to
+            }
+
+            BUFFER_POOL.release(buffer);
+        }
+    }
+
+    private class PackfileChannel implements SeekableByteChannel {
+        private final FileEntry file;
+
+        private byte[] srcbuf;
+        private byte[] dstbuf;
+
+        private byte[] data;
+        private ChunkEntry chunk;
+        private long position;
+        private boolean open = true;
+
+        public PackfileChannel(@NotNull FileEntry file) {
+            this.file = file;
+        }
+
+        @Override
+        public synchronized int read(ByteBuffer dst) throws IOException {
+            ensureOpen();
+
+            final long size = file.span().size();
+
+            if (position >= size) {
+                return -1;
+            }
+
+            int read = 0;
+
+            while (dst.hasRemaining() && position < size) {
+                final long offset = file.span().offset() + position;
+
+                if (chunk == null || offset < chunk.decompressed().offset() || offset >= chunk.decompressed().offset() + chunk.decompressed().size()) {
+                    nextChunk(offset);
+                }
+
+                final int start = (int) (offset - chunk.decompressed().offset());
+                final int length = (int) Math.min(Math.min(chunk.decompressed().size() - start, size - position), dst.remaining());
+
+                dst.put(data, start, length);
+                position += length;
+                read += length;
+            }
+
+            return read;
+        }
+
+        @Override
+        public int write(ByteBuffer src) {
+            throw new NonWritableChannelException();
+        }
+
+        @Override
+        public synchronized long position() throws IOException {
+            ensureOpen();
+            return position;
+        }
+
+        @Override
+        public synchronized SeekableByteChannel position(long newPosition) throws IOException {
+            ensureOpen();
+
+            if (newPosition < 0) {
+                throw new IllegalArgumentException("Negative position: " + newPosition);
+            }
+
+            position = newPosition;
+            return this;
+        }
+
+        @Override
+        public synchronized long size() throws IOException {
+            ensureOpen();
+            return file.span().size();
+        }
+
+        @Override
+        public SeekableByteChannel truncate(long size) {
+            throw new NonWritableChannelException();
+        }
+
+        @Override
+        public synchronized boolean isOpen() {
+            return open;
+        }
+
+        @Override
+        public synchronized void close() {
+            if (srcbuf != null) {
+                BUFFER_POOL.release(srcbuf);
+                srcbuf = null;
+            }
+
+            if (dstbuf != null) {
+                BUFFER_POOL.release(dstbuf);
+                dstbuf = null;
+            }
+
+            data = null;
+            chunk = null;
+            open = false;
+        }
+
+        private void nextChunk(long offset) throws IOException {
+            final ChunkEntry chunk = getChunkEntry(offset);
+
+            if (chunk == null) {
+                throw new IOException("Can't find chunk entry for offset %#x".formatted(offset));
+            }
+
+            if (srcbuf == null) {
+                srcbuf = BUFFER_POOL.acquire(Compressor.getCompressedSize(header.chunkEntrySize()));
+            }
+
+            if (dstbuf == null && cache == null) {
+                dstbuf = BUFFER_POOL.acquire(header.chunkEntrySize());
+            }
+
+            // Forget the current chunk first, so it's not used if decompression fails midway
+            this.chunk = null;
+            this.data = getChunkData(chunk, srcbuf, dstbuf);
+            this.chunk = chunk;
+        }
+
+        private void ensureOpen() throws ClosedChannelException {
+            if (!open) {
+                throw new ClosedChannelException();
+            }
         }
     }
 }
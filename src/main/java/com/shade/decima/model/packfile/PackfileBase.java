@@ -6,12 +6,17 @@ import com.shade.platform.model.util.IOUtils;
 import com.shade.util.NotNull;
 import com.shade.util.Nullable;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.nio.charset.StandardCharsets;
+import java.security.DigestException;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.util.*;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
 
 public abstract class PackfileBase {
     public static final int[] HEADER_KEY = new int[]{0x0FA3A9443, 0x0F41CAB62, 0x0F376811C, 0x0D2A89E3E};
@@ -20,61 +25,139 @@ public abstract class PackfileBase {
     public static final int MAGIC_PLAIN = 0x20304050;
     public static final int MAGIC_ENCRYPTED = 0x21304050;
 
-    protected final Header header;
-
     /**
-     * {@link FileEntry#hash()} to {@link FileEntry} mappings.
+     * Minimum number of records a table must have to be decoded in parallel.
      */
-    protected final SortedMap<Long, FileEntry> files;
+    private static final int PARALLEL_DECODE_THRESHOLD = 0x4000;
+
+    protected final Header header;
 
     /**
-     * {@link Span#offset()} of {@link ChunkEntry#decompressed()} to {@link ChunkEntry} mappings.
+     * Tables of this packfile, or {@code null} if they're not loaded yet.
      */
-    protected final NavigableMap<Long, ChunkEntry> chunks;
+    private volatile Tables tables;
 
     protected PackfileBase(@NotNull Header header) {
         this.header = header;
-        this.files = new TreeMap<>(Long::compareUnsigned);
-        this.chunks = new TreeMap<>(Long::compareUnsigned);
     }
 
     @Nullable
     public FileEntry getFileEntry(long hash) {
-        return files.get(hash);
+        final FileTable files = getTables().files();
+        final int index = files.find(hash);
+        return index >= 0 ? files.get(index) : null;
     }
 
     @NotNull
-    public Collection<FileEntry> getFileEntries() {
-        return files.values();
+    public List<FileEntry> getFileEntries() {
+        return getTables().files();
     }
 
     @Nullable
     public ChunkEntry getChunkEntry(long offset) {
-        return chunks.get(offset & -Compressor.BLOCK_SIZE_BYTES);
+        final ChunkTable chunks = getTables().chunks();
+        final int index = chunks.find(offset & -Compressor.BLOCK_SIZE_BYTES);
+        return index >= 0 ? chunks.get(index) : null;
     }
 
     @NotNull
-    public NavigableMap<Long, ChunkEntry> getChunkEntries(@NotNull Span span) {
-        final NavigableMap<Long, ChunkEntry> map = chunks.subMap(
-            span.offset() & -Compressor.BLOCK_SIZE_BYTES, true,
-            span.offset() + span.size() & -Compressor.BLOCK_SIZE_BYTES, true
-        );
+    public List<ChunkEntry> getChunkEntries() {
+        return getTables().chunks();
+    }
 
-        if (map.isEmpty()) {
+    /**
+     * Returns chunk entries that contain data of the given span, ordered by their offset.
+     */
+    @NotNull
+    public List<ChunkEntry> getChunkEntries(@NotNull Span span) {
+        final ChunkTable chunks = getTables().chunks();
+        // The end is exclusive, so a span ending at a chunk boundary doesn't include the following chunk
+        final long last = span.size() > 0 ? span.offset() + span.size() - 1 : span.offset();
+        final int from = chunks.search(span.offset() & -Compressor.BLOCK_SIZE_BYTES, false);
+        final int to = chunks.search(last & -Compressor.BLOCK_SIZE_BYTES, true);
+
+        if (from >= to) {
             throw new IllegalArgumentException(String.format("Can't find any chunk entries for span starting at %#x (size: %#x)", span.offset(), span.size()));
         }
 
-        return map;
+        return chunks.subList(from, to);
     }
 
     public boolean contains(long hash) {
-        return files.containsKey(hash);
+        return getTables().files().find(hash) >= 0;
     }
 
     public boolean isEmpty() {
         return header.fileEntryCount() == 0;
     }
 
+    /**
+     * Returns whether tables of this packfile are loaded. Tables are loaded on first access to them.
+     */
+    public boolean isLoaded() {
+        return tables != null;
+    }
+
+    /**
+     * Returns hashes of all files sorted as unsigned numbers. The returned array must not be modified.
+     */
+    @NotNull
+    long[] getFileHashes() {
+        return getTables().files().hashes;
+    }
+
+    /**
+     * Loads tables of this packfile if they're not loaded yet.
+     * <p>
+     * Methods that access the tables load them implicitly, but since most of them can't throw {@link IOException},
+     * they report failures as {@link UncheckedIOException}. Methods that perform I/O call this method first instead,
+     * so failures to load the tables are reported as {@link IOException}.
+     *
+     * @throws IOException if the tables can't be loaded
+     */
+    public void load() throws IOException {
+        try {
+            getTables();
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Loads tables of this packfile. Called at most once, on first access to the tables.
+     */
+    @NotNull
+    protected abstract Tables loadTables() throws IOException;
+
+    /**
+     * Returns tables of this packfile, loading them if needed.
+     *
+     * @throws UncheckedIOException if the tables can't be loaded
+     * @see #load()
+     */
+    @NotNull
+    protected Tables getTables() {
+        Tables tables = this.tables;
+
+        if (tables == null) {
+            synchronized (this) {
+                tables = this.tables;
+
+                if (tables == null) {
+                    try {
+                        tables = loadTables();
+                    } catch (IOException e) {
+                        throw new UncheckedIOException("Can't load tables of the packfile", e);
+                    }
+
+                    this.tables = tables;
+                }
+            }
+        }
+
+        return tables;
+    }
+
     @NotNull
     public static String getNormalizedPath(@NotNull String path) {
         return getNormalizedPath(path, true);
@@ -106,8 +189,7 @@ public abstract class PackfileBase {
 
     public static long getPathHash(@NotNull String path) {
         final byte[] data = path.getBytes(StandardCharsets.UTF_8);
-        final byte[] cstr = Arrays.copyOf(data, data.length + 1);
-        return MurmurHash3.mmh3(cstr)[0];
+        return MurmurHash3.mmh3Low(data, 0, data.length, true);
     }
 
     private static void swizzle(@NotNull ByteBuffer buffer, int key1, int key2) {
@@ -117,8 +199,8 @@ public abstract class PackfileBase {
             key2, HEADER_KEY[1], HEADER_KEY[2], HEADER_KEY[3]
         );
 
-        System.arraycopy(MurmurHash3.mmh3(data, 0, 16), 0, hash, 0, 2);
-        System.arraycopy(MurmurHash3.mmh3(data, 16, 16), 0, hash, 2, 2);
+        MurmurHash3.mmh3(data, 0, 16, hash, 0);
+        MurmurHash3.mmh3(data, 16, 16, hash, 2);
 
         final ByteBuffer slice = buffer.slice().order(ByteOrder.LITTLE_ENDIAN);
 
@@ -282,28 +364,56 @@ public abstract class PackfileBase {
         }
 
         public static void swizzle(@NotNull ByteBuffer buffer, @NotNull Span decompressed) {
+            final long[] key = new long[2];
+            getDataKey(decompressed, key, 0);
+            swizzle(buffer, key[0], key[1]);
+        }
+
+        /**
+         * Derives the key used to encrypt data of a chunk with the given decompressed span.
+         * <p>
+         * The key is stored as two little-endian halves into {@code dst} starting at {@code index}.
+         */
+        static void getDataKey(@NotNull Span decompressed, @NotNull long[] dst, int index) {
             final byte[] key = new byte[16];
             IOUtils.put(key, 0, decompressed.offset);
             IOUtils.put(key, 8, decompressed.size);
             IOUtils.put(key, 12, decompressed.key);
 
-            final long[] hash = MurmurHash3.mmh3(key);
-            IOUtils.put(key, 0, hash[0]);
-            IOUtils.put(key, 8, hash[1]);
+            MurmurHash3.mmh3(key, 0, 16, dst, index);
+            IOUtils.put(key, 0, dst[index] ^ (DATA_KEY[0] & 0xffffffffL | (long) DATA_KEY[1] << 32));
+            IOUtils.put(key, 8, dst[index + 1] ^ (DATA_KEY[2] & 0xffffffffL | (long) DATA_KEY[3] << 32));
 
-            for (int i = 0; i < 4; i++) {
-                key[i * 4] ^= DATA_KEY[i] & 0xff;
-                key[i * 4 + 1] ^= DATA_KEY[i] >> 8 & 0xff;
-                key[i * 4 + 2] ^= DATA_KEY[i] >> 16 & 0xff;
-                key[i * 4 + 3] ^= DATA_KEY[i] >> 24 & 0xff;
+            try {
+                final MessageDigest md5 = MD5.get();
+                md5.update(key);
+                md5.digest(key, 0, key.length);
+            } catch (DigestException e) {
+                throw new IllegalStateException(e);
             }
 
-            System.arraycopy(MD5.get().digest(key), 0, key, 0, 16);
+            dst[index] = IOUtils.toLong(key, 0);
+            dst[index + 1] = IOUtils.toLong(key, 8);
+        }
 
-            final ByteBuffer slice = buffer.slice();
+        /**
+         * Applies a key previously derived with {@link #getDataKey} to the remaining data of {@code buffer}.
+         * The position of the buffer is not changed.
+         */
+        static void swizzle(@NotNull ByteBuffer buffer, long key1, long key2) {
+            final ByteBuffer slice = buffer.slice().order(ByteOrder.LITTLE_ENDIAN);
+            final int length = slice.remaining();
 
-            for (int i = 0; i < slice.remaining(); i++) {
-                buffer.put(i, (byte) (buffer.get(i) ^ key[i & 15]));
+            int i = 0;
+
+            for (; i + 16 <= length; i += 16) {
+                slice.putLong(i, slice.getLong(i) ^ key1);
+                slice.putLong(i + 8, slice.getLong(i + 8) ^ key2);
+            }
+
+            for (; i < length; i++) {
+                final long key = (i & 8) == 0 ? key1 : key2;
+                slice.put(i, (byte) (slice.get(i) ^ key >>> ((i & 7) << 3)));
             }
         }
 
@@ -313,6 +423,370 @@ public abstract class PackfileBase {
         }
     }
 
+    /**
+     * Decodes records of a table. Records are independent of each other, so large tables are decoded in parallel.
+     */
+    protected static void decodeTable(int count, @NotNull IntConsumer decoder) {
+        final IntStream stream = IntStream.range(0, count);
+
+        if (count >= PARALLEL_DECODE_THRESHOLD) {
+            stream.parallel().forEach(decoder);
+        } else {
+            stream.forEach(decoder);
+        }
+    }
+
+    /**
+     * Sorts entries by their natural order, keeping only the last of entries that are equal.
+     *
+     * @return number of remaining entries, which are moved to the beginning of the array
+     */
+    private static <T extends Comparable<T>> int sortUnique(@NotNull T[] entries) {
+        boolean sorted = true;
+
+        for (int i = 1; i < entries.length && sorted; i++) {
+            sorted = entries[i - 1].compareTo(entries[i]) < 0;
+        }
+
+        if (sorted) {
+            return entries.length;
+        }
+
+        // The sort is stable, so the last of equal entries stays the last one
+        Arrays.sort(entries);
+
+        int count = 0;
+
+        for (int i = 0; i < entries.length; i++) {
+            if (i + 1 < entries.length && entries[i].compareTo(entries[i + 1]) == 0) {
+                continue;
+            }
+
+            entries[count++] = entries[i];
+        }
+
+        return count;
+    }
+
+    /**
+     * Performs binary search over keys sorted as unsigned numbers.
+     *
+     * @param upper whether to search for the first key greater than {@code key}
+     *              instead of the first key greater than or equal to {@code key}
+     * @return index of the found key, or {@code keys.length} if there's none
+     */
+    private static int search(@NotNull long[] keys, long key, boolean upper) {
+        int low = 0;
+        int high = keys.length;
+
+        while (low < high) {
+            final int mid = low + high >>> 1;
+            final int cmp = Long.compareUnsigned(keys[mid], key);
+
+            if (cmp < 0 || upper && cmp == 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+
+        return low;
+    }
+
+    private static void getLongs(@NotNull ByteBuffer buffer, @NotNull long[] dst) {
+        buffer.asLongBuffer().get(dst);
+        buffer.position(buffer.position() + dst.length * Long.BYTES);
+    }
+
+    private static void getInts(@NotNull ByteBuffer buffer, @NotNull int[] dst) {
+        buffer.asIntBuffer().get(dst);
+        buffer.position(buffer.position() + dst.length * Integer.BYTES);
+    }
+
+    private static void putLongs(@NotNull ByteBuffer buffer, @NotNull long[] src) {
+        buffer.asLongBuffer().put(src);
+        buffer.position(buffer.position() + src.length * Long.BYTES);
+    }
+
+    private static void putInts(@NotNull ByteBuffer buffer, @NotNull int[] src) {
+        buffer.asIntBuffer().put(src);
+        buffer.position(buffer.position() + src.length * Integer.BYTES);
+    }
+
+    /**
+     * Decoded file and chunk tables of a packfile.
+     */
+    protected static record Tables(@NotNull FileTable files, @NotNull ChunkTable chunks) {
+        /**
+         * Size of a single entry of either table when written using {@code write}.
+         */
+        static final int ENTRY_BYTES = Long.BYTES * 2 + Integer.BYTES * 4;
+    }
+
+    /**
+     * A table of file entries stored as primitive columns rather than as individual objects.
+     * <p>
+     * Entries are materialized on access, so it's preferable to look them up by hash rather than to hold onto them.
+     */
+    protected static final class FileTable extends AbstractList<FileEntry> implements RandomAccess {
+        private final long[] hashes;
+        private final long[] offsets;
+        private final int[] indices;
+        private final int[] keys;
+        private final int[] sizes;
+        private final int[] spanKeys;
+
+        private FileTable(@NotNull long[] hashes, @NotNull long[] offsets, @NotNull int[] indices, @NotNull int[] keys, @NotNull int[] sizes, @NotNull int[] spanKeys) {
+            this.hashes = hashes;
+            this.offsets = offsets;
+            this.indices = indices;
+            this.keys = keys;
+            this.sizes = sizes;
+            this.spanKeys = spanKeys;
+        }
+
+        FileTable(@NotNull FileEntry[] entries) {
+            final int count = sortUnique(entries);
+
+            this.hashes = new long[count];
+            this.offsets = new long[count];
+            this.indices = new int[count];
+            this.keys = new int[count];
+            this.sizes = new int[count];
+            this.spanKeys = new int[count];
+
+            for (int i = 0; i < count; i++) {
+                final FileEntry entry = entries[i];
+
+                hashes[i] = entry.hash();
+                indices[i] = entry.index();
+                keys[i] = entry.key();
+                offsets[i] = entry.span().offset();
+                sizes[i] = entry.span().size();
+                spanKeys[i] = entry.span().key();
+            }
+        }
+
+        /**
+         * Reads a table previously written with {@link #write(ByteBuffer)}.
+         */
+        @NotNull
+        static FileTable read(@NotNull ByteBuffer buffer, int count) {
+            final long[] hashes = new long[count];
+            final long[] offsets = new long[count];
+            final int[] indices = new int[count];
+            final int[] keys = new int[count];
+            final int[] sizes = new int[count];
+            final int[] spanKeys = new int[count];
+
+            getLongs(buffer, hashes);
+            getLongs(buffer, offsets);
+            getInts(buffer, indices);
+            getInts(buffer, keys);
+            getInts(buffer, sizes);
+            getInts(buffer, spanKeys);
+
+            return new FileTable(hashes, offsets, indices, keys, sizes, spanKeys);
+        }
+
+        /**
+         * Reads only hashes of a table previously written with {@link #write(ByteBuffer)}.
+         */
+        @NotNull
+        static long[] readHashes(@NotNull ByteBuffer buffer, int count) {
+            final long[] hashes = new long[count];
+            getLongs(buffer, hashes);
+            return hashes;
+        }
+
+        /**
+         * Writes columns of this table one after another, so they can be read back without decoding individual entries.
+         */
+        void write(@NotNull ByteBuffer buffer) {
+            putLongs(buffer, hashes);
+            putLongs(buffer, offsets);
+            putInts(buffer, indices);
+            putInts(buffer, keys);
+            putInts(buffer, sizes);
+            putInts(buffer, spanKeys);
+        }
+
+        /**
+         * @return index of the entry with the given hash, or {@code -1} if there's none
+         */
+        public int find(long hash) {
+            final int index = search(hashes, hash, false);
+            return index < hashes.length && hashes[index] == hash ? index : -1;
+        }
+
+        @NotNull
+        @Override
+        public FileEntry get(int index) {
+            Objects.checkIndex(index, hashes.length);
+            return new FileEntry(indices[index], keys[index], hashes[index], new Span(offsets[index], sizes[index], spanKeys[index]));
+        }
+
+        @Override
+        public int size() {
+            return hashes.length;
+        }
+    }
+
+    /**
+     * A table of chunk entries stored as primitive columns rather than as individual objects.
+     */
+    protected static final class ChunkTable extends AbstractList<ChunkEntry> implements RandomAccess {
+        private final long[] offsets;
+        private final long[] compressedOffsets;
+        private final int[] sizes;
+        private final int[] keys;
+        private final int[] compressedSizes;
+        private final int[] compressedKeys;
+
+        /**
+         * Keys used to decrypt data of each chunk, two longs per chunk, or {@code null} if the packfile is not encrypted.
+         */
+        private final long[] dataKeys;
+
+        private ChunkTable(@NotNull long[] offsets, @NotNull long[] compressedOffsets, @NotNull int[] sizes, @NotNull int[] keys, @NotNull int[] compressedSizes, @NotNull int[] compressedKeys, @Nullable long[] dataKeys) {
+            this.offsets = offsets;
+            this.compressedOffsets = compressedOffsets;
+            this.sizes = sizes;
+            this.keys = keys;
+            this.compressedSizes = compressedSizes;
+            this.compressedKeys = compressedKeys;
+            this.dataKeys = dataKeys;
+        }
+
+        /**
+         * @param encrypted whether data of chunks is encrypted, in which case keys used to decrypt it are derived upfront
+         */
+        ChunkTable(@NotNull ChunkEntry[] entries, boolean encrypted) {
+            final int count = sortUnique(entries);
+
+            this.offsets = new long[count];
+            this.compressedOffsets = new long[count];
+            this.sizes = new int[count];
+            this.keys = new int[count];
+            this.compressedSizes = new int[count];
+            this.compressedKeys = new int[count];
+
+            for (int i = 0; i < count; i++) {
+                final ChunkEntry entry = entries[i];
+
+                offsets[i] = entry.decompressed().offset();
+                sizes[i] = entry.decompressed().size();
+                keys[i] = entry.decompressed().key();
+                compressedOffsets[i] = entry.compressed().offset();
+                compressedSizes[i] = entry.compressed().size();
+                compressedKeys[i] = entry.compressed().key();
+            }
+
+            if (encrypted) {
+                final long[] dataKeys = new long[count * 2];
+                decodeTable(count, index -> ChunkEntry.getDataKey(new Span(offsets[index], sizes[index], keys[index]), dataKeys, index * 2));
+                this.dataKeys = dataKeys;
+            } else {
+                this.dataKeys = null;
+            }
+        }
+
+        /**
+         * Reads a table previously written with {@link #write(ByteBuffer)}.
+         */
+        @NotNull
+        static ChunkTable read(@NotNull ByteBuffer buffer, int count, boolean encrypted) {
+            final long[] offsets = new long[count];
+            final long[] compressedOffsets = new long[count];
+            final int[] sizes = new int[count];
+            final int[] keys = new int[count];
+            final int[] compressedSizes = new int[count];
+            final int[] compressedKeys = new int[count];
+
+            getLongs(buffer, offsets);
+            getLongs(buffer, compressedOffsets);
+            getInts(buffer, sizes);
+            getInts(buffer, keys);
+            getInts(buffer, compressedSizes);
+            getInts(buffer, compressedKeys);
+
+            final long[] dataKeys = encrypted ? new long[count * 2] : null;
+
+            if (dataKeys != null) {
+                getLongs(buffer, dataKeys);
+            }
+
+            return new ChunkTable(offsets, compressedOffsets, sizes, keys, compressedSizes, compressedKeys, dataKeys);
+        }
+
+        /**
+         * Writes columns of this table one after another, so they can be read back without decoding individual entries.
+         */
+        void write(@NotNull ByteBuffer buffer) {
+            putLongs(buffer, offsets);
+            putLongs(buffer, compressedOffsets);
+            putInts(buffer, sizes);
+            putInts(buffer, keys);
+            putInts(buffer, compressedSizes);
+            putInts(buffer, compressedKeys);
+
+            if (dataKeys != null) {
+                putLongs(buffer, dataKeys);
+            }
+        }
+
+        /**
+         * Returns the number of bytes {@link #write(ByteBuffer)} would write.
+         */
+        static int getBytes(int count, boolean encrypted) {
+            return count * (Tables.ENTRY_BYTES + (encrypted ? Long.BYTES * 2 : 0));
+        }
+
+        /**
+         * Decrypts or encrypts data of the given chunk using a precomputed key if there's one.
+         */
+        void swizzle(@NotNull ChunkEntry chunk, @NotNull ByteBuffer buffer) {
+            final Span span = chunk.decompressed();
+            final int index = dataKeys != null ? find(span.offset()) : -1;
+
+            if (index >= 0 && sizes[index] == span.size() && keys[index] == span.key()) {
+                ChunkEntry.swizzle(buffer, dataKeys[index * 2], dataKeys[index * 2 + 1]);
+            } else {
+                chunk.swizzle(buffer);
+            }
+        }
+
+        /**
+         * @return index of the entry whose decompressed data starts at the given offset, or {@code -1} if there's none
+         */
+        public int find(long offset) {
+            final int index = search(offset, false);
+            return index < offsets.length && offsets[index] == offset ? index : -1;
+        }
+
+        /**
+         * @see PackfileBase#search(long[], long, boolean)
+         */
+        public int search(long offset, boolean upper) {
+            return PackfileBase.search(offsets, offset, upper);
+        }
+
+        @NotNull
+        @Override
+        public ChunkEntry get(int index) {
+            Objects.checkIndex(index, offsets.length);
+            return new ChunkEntry(
+                new Span(offsets[index], sizes[index], keys[index]),
+                new Span(compressedOffsets[index], compressedSizes[index], compressedKeys[index])
+            );
+        }
+
+        @Override
+        public int size() {
+            return offsets.length;
+        }
+    }
+
     public static record Span(long offset, int size, int key) implements Comparable<Span> {
         public static final int BYTES = 16;
 
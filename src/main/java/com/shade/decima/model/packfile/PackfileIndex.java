@@ -0,0 +1,184 @@
+package com.shade.decima.model.packfile;
+
+import com.shade.util.NotNull;
+import com.shade.util.Nullable;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * An index of files of multiple packfiles, mapping path hashes to packfiles that contain them.
+ * <p>
+ * It's an open-addressing hash table with linear probing keyed by primitive {@code long}s,
+ * so lookups don't box keys and don't depend on the number of indexed packfiles.
+ * <p>
+ * Packfiles that contain the same file are kept in the order of the comparator supplied
+ * to the constructor, so the first one takes priority.
+ */
+public class PackfileIndex {
+    private static final int INITIAL_CAPACITY = 1 << 16;
+    private static final Packfile[] EMPTY = new Packfile[0];
+
+    private final Comparator<Packfile> priority;
+
+    private long[] keys;
+    private Packfile[][] values;
+    private int size;
+
+    public PackfileIndex(@NotNull Comparator<Packfile> priority) {
+        this.priority = priority;
+        this.keys = new long[INITIAL_CAPACITY];
+        this.values = new Packfile[INITIAL_CAPACITY][];
+    }
+
+    /**
+     * Adds all files of the given packfile to the index.
+     */
+    public synchronized void add(@NotNull Packfile packfile) {
+        // Hashes don't require tables to be loaded, so lazily loaded packfiles stay that way
+        for (long hash : packfile.getFileHashes()) {
+            put(hash, packfile);
+        }
+    }
+
+    /**
+     * Removes all files of the given packfile from the index.
+     */
+    public synchronized void remove(@NotNull Packfile packfile) {
+        final long[] oldKeys = keys;
+        final Packfile[][] oldValues = values;
+
+        // Removing keys would break probe sequences of other keys, so the table is rebuilt instead
+        keys = new long[oldKeys.length];
+        values = new Packfile[oldKeys.length][];
+        size = 0;
+
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldValues[i] == null) {
+                continue;
+            }
+
+            for (Packfile other : oldValues[i]) {
+                if (other != packfile) {
+                    put(oldKeys[i], other);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns a packfile with the highest priority that contains the given file, or {@code null} if there's none.
+     */
+    @Nullable
+    public synchronized Packfile findAny(long hash) {
+        final int index = find(hash);
+        return index >= 0 ? values[index][0] : null;
+    }
+
+    /**
+     * Returns all packfiles that contain the given file, ordered by their priority.
+     */
+    @NotNull
+    public synchronized List<Packfile> findAll(long hash) {
+        final int index = find(hash);
+        return List.of(index >= 0 ? values[index] : EMPTY);
+    }
+
+    /**
+     * Returns the number of distinct files in the index.
+     */
+    public synchronized int size() {
+        return size;
+    }
+
+    public synchronized void clear() {
+        keys = new long[INITIAL_CAPACITY];
+        values = new Packfile[INITIAL_CAPACITY][];
+        size = 0;
+    }
+
+    private void put(long hash, @NotNull Packfile packfile) {
+        int index = find(hash);
+
+        if (index >= 0) {
+            final Packfile[] packfiles = values[index];
+
+            if (Arrays.asList(packfiles).contains(packfile)) {
+                return;
+            }
+
+            int position = Arrays.binarySearch(packfiles, packfile, priority);
+
+            if (position < 0) {
+                position = -position - 1;
+            }
+
+            final Packfile[] result = new Packfile[packfiles.length + 1];
+
+            System.arraycopy(packfiles, 0, result, 0, position);
+            System.arraycopy(packfiles, position, result, position + 1, packfiles.length - position);
+            result[position] = packfile;
+            values[index] = result;
+
+            return;
+        }
+
+        if ((size + 1) * 4L > keys.length * 3L) {
+            resize(keys.length * 2);
+            index = find(hash);
+        }
+
+        index = -index - 1;
+        keys[index] = hash;
+        values[index] = new Packfile[]{packfile};
+        size += 1;
+    }
+
+    /**
+     * @return index of the slot containing the given hash, or {@code -(index + 1)} of the free slot it would be put in
+     */
+    private int find(long hash) {
+        final int mask = keys.length - 1;
+
+        for (int index = mix(hash) & mask; ; index = index + 1 & mask) {
+            if (values[index] == null) {
+                return -index - 1;
+            }
+
+            if (keys[index] == hash) {
+                return index;
+            }
+        }
+    }
+
+    private void resize(int capacity) {
+        final long[] oldKeys = keys;
+        final Packfile[][] oldValues = values;
+        final int mask = capacity - 1;
+
+        keys = new long[capacity];
+        values = new Packfile[capacity][];
+
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldValues[i] == null) {
+                continue;
+            }
+
+            int index = mix(oldKeys[i]) & mask;
+
+            while (values[index] != null) {
+                index = index + 1 & mask;
+            }
+
+            keys[index] = oldKeys[i];
+            values[index] = oldValues[i];
+        }
+    }
+
+    private static int mix(long hash) {
+        // Path hashes are already well distributed, but fold them anyway to use all bits
+        final long h = hash * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ h >>> 32);
+    }
+}
@@ -5,7 +5,7 @@ import com.google.gson.GsonBuilder;
 import com.google.gson.JsonDeserializer;
 import com.google.gson.reflect.TypeToken;
 import com.shade.decima.model.rtti.objects.Language;
-import com.shade.decima.model.util.Compressor;
+import com.shade.decima.model.util.Codec;
 import com.shade.platform.model.util.IOUtils;
 import com.shade.util.NotNull;
 import com.shade.util.Nullable;
@@ -14,11 +14,13 @@ import org.slf4j.LoggerFactory;
 
 import java.io.Closeable;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.io.Reader;
-import java.nio.channels.FileChannel;
+import java.nio.ByteBuffer;
 import java.nio.file.*;
 import java.nio.file.attribute.BasicFileAttributes;
 import java.util.*;
+import java.util.concurrent.*;
 
 import static com.shade.decima.model.packfile.PackfileBase.*;
 
@@ -26,15 +28,56 @@ public class PackfileManager implements Closeable {
     private static final Logger log = LoggerFactory.getLogger(PackfileManager.class);
 
     private static final String PACKFILE_EXTENSION = ".bin";
+    private static final String PATCH_PREFIX = "patch";
+    private static final int MOUNT_THREADS = Runtime.getRuntime().availableProcessors();
+    private static final int READ_THREADS = Runtime.getRuntime().availableProcessors();
+    private static final long CHUNK_CACHE_CAPACITY = 64 * 1024 * 1024;
+    private static final int CHANNEL_POOL_CAPACITY = 64;
     private static final Gson GSON = new GsonBuilder()
         .registerTypeAdapter(Language.class, (JsonDeserializer<Object>) (json, type, context) -> Language.values()[json.getAsInt()])
         .create();
 
-    private final Compressor compressor;
+    /**
+     * Patch packfiles override files of regular packfiles, so they come first.
+     */
+    private static final Comparator<Packfile> PRIORITY = Comparator
+        .comparing(PackfileManager::isPatch).reversed()
+        .thenComparing(Comparator.naturalOrder());
+
+    private final Codec compressor;
     private final SortedSet<Packfile> packfiles;
+    private final PackfileIndex index;
     private final Map<String, PackfileInfo> packfilesInfo;
+    private final ChunkCache cache;
+    private final ChannelPool channels;
+    private final PackfileTableCache tableCache;
+    private final boolean mapped;
+
+    /**
+     * Executes asynchronous reads. See {@link #extractAsync(long)}.
+     */
+    private final ExecutorService executor;
+
+    /**
+     * Asynchronous reads that are not completed yet, so concurrent requests for the same file can share them.
+     */
+    private final Map<Long, CompletableFuture<ByteBuffer>> pending;
+
+    public PackfileManager(@NotNull Codec compressor, @Nullable Path packfileInfoPath) {
+        this(compressor, packfileInfoPath, false);
+    }
 
-    public PackfileManager(@NotNull Compressor compressor, @Nullable Path packfileInfoPath) {
+    public PackfileManager(@NotNull Codec compressor, @Nullable Path packfileInfoPath, boolean mapped) {
+        this(compressor, packfileInfoPath, mapped, null);
+    }
+
+    /**
+     * Creates a new packfile manager.
+     *
+     * @param mapped         whether mounted packfiles should be memory-mapped. See {@link Packfile#isMapped()}
+     * @param tableCachePath a directory for caching decoded tables of mounted packfiles, or {@code null} to disable caching
+     */
+    public PackfileManager(@NotNull Codec compressor, @Nullable Path packfileInfoPath, boolean mapped, @Nullable Path tableCachePath) {
         Map<String, PackfileInfo> info = null;
 
         if (packfileInfoPath != null) {
@@ -46,12 +89,31 @@ public class PackfileManager implements Closeable {
         }
 
         this.compressor = compressor;
-        this.packfiles = new TreeSet<>();
+        this.packfiles = new ConcurrentSkipListSet<>();
+        this.index = new PackfileIndex(PRIORITY);
         this.packfilesInfo = info;
+        this.cache = new ChunkCache(CHUNK_CACHE_CAPACITY);
+        this.channels = new ChannelPool(CHANNEL_POOL_CAPACITY);
+        this.tableCache = tableCachePath != null ? new PackfileTableCache(tableCachePath) : null;
+        this.mapped = mapped;
+        this.executor = Executors.newFixedThreadPool(READ_THREADS, runnable -> {
+            final Thread thread = new Thread(runnable, "Packfile reader");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.pending = new ConcurrentHashMap<>();
     }
 
+    /**
+     * Mounts a packfile. Can be called from multiple threads concurrently.
+     * <p>
+     * If tables of the packfile are cached, they're loaded lazily, so failures to read them are reported
+     * by the first method that accesses them rather than by this method. See {@link Packfile#load()}.
+     *
+     * @return {@code true} if the packfile was mounted, or {@code false} if it doesn't exist or a packfile with the same name is already mounted
+     */
     public boolean mount(@NotNull Path packfile) throws IOException {
-        log.info("Mounting {}", packfile);
+        log.debug("Mounting {}", packfile);
 
         if (!Files.exists(packfile)) {
             log.info("Cannot mount {} because the file does not exist", packfile);
@@ -68,12 +130,52 @@ public class PackfileManager implements Closeable {
             ? packfilesInfo.get(name)
             : null;
 
-        packfiles.add(new Packfile(
-            FileChannel.open(packfile, StandardOpenOption.READ),
+        final long start = System.nanoTime();
+        final Packfile result = new Packfile(
+            channels.open(packfile),
             compressor,
             info,
-            packfile
-        ));
+            packfile,
+            mapped,
+            cache,
+            tableCache
+        );
+
+        // Packfiles are compared by their names, so a packfile with the same name may already be mounted
+        if (!packfiles.add(result)) {
+            log.warn("Cannot mount {} because a packfile with the same name is already mounted", packfile);
+            result.close();
+            return false;
+        }
+
+        log.info(
+            "Mounted {} in {} ms ({} files, {} chunks{})",
+            packfile,
+            (System.nanoTime() - start) / 1_000_000,
+            result.header.fileEntryCount(),
+            result.header.chunkEntryCount(),
+            result.isLoaded() ? "" : ", tables are loaded lazily"
+        );
+
+        index.add(result);
+
+        return true;
+    }
+
+    /**
+     * Unmounts a packfile and closes it.
+     *
+     * @return {@code true} if the packfile was unmounted, or {@code false} if it wasn't mounted
+     */
+    public boolean unmount(@NotNull Packfile packfile) throws IOException {
+        if (!packfiles.remove(packfile)) {
+            return false;
+        }
+
+        index.remove(packfile);
+        packfile.close();
+
+        log.info("Unmounted {}", packfile.getPath());
 
         return true;
     }
@@ -97,9 +199,50 @@ public class PackfileManager implements Closeable {
             });
         }
 
-        for (Path packfilePath : packfilesToMount) {
-            mount(packfilePath);
+        final long start = System.nanoTime();
+        final ExecutorService executor = Executors.newFixedThreadPool(
+            Math.max(1, Math.min(MOUNT_THREADS, packfilesToMount.size())),
+            runnable -> {
+                final Thread thread = new Thread(runnable, "Packfile mounter");
+                thread.setDaemon(true);
+                return thread;
+            }
+        );
+
+        try {
+            final List<Future<Boolean>> futures = new ArrayList<>(packfilesToMount.size());
+
+            for (Path packfilePath : packfilesToMount) {
+                futures.add(executor.submit(() -> mount(packfilePath)));
+            }
+
+            IOException exception = null;
+
+            for (Future<Boolean> future : futures) {
+                try {
+                    future.get();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted while mounting packfiles");
+                } catch (ExecutionException e) {
+                    final IOException cause = e.getCause() instanceof IOException io ? io : new IOException("Error mounting packfile", e.getCause());
+
+                    if (exception == null) {
+                        exception = cause;
+                    } else {
+                        exception.addSuppressed(cause);
+                    }
+                }
+            }
+
+            if (exception != null) {
+                throw exception;
+            }
+        } finally {
+            executor.shutdownNow();
         }
+
+        log.info("Mounted {} packfiles in {} ms", packfiles.size(), (System.nanoTime() - start) / 1_000_000);
     }
 
     @Nullable
@@ -107,24 +250,99 @@ public class PackfileManager implements Closeable {
         return findAny(getPathHash(getNormalizedPath(path)));
     }
 
+    /**
+     * Returns a packfile that contains the given file. Patch packfiles take priority over regular ones.
+     */
     @Nullable
     public Packfile findAny(long hash) {
-        return packfiles.stream()
-            .filter(x -> x.getFileEntry(hash) != null)
-            .findAny().orElse(null);
+        return index.findAny(hash);
     }
 
-
     @NotNull
     public List<Packfile> findAll(@NotNull String path) {
         return findAll(getPathHash(getNormalizedPath(path)));
     }
 
+    /**
+     * Returns all packfiles that contain the given file, with patch packfiles first.
+     */
     @NotNull
     public List<Packfile> findAll(long hash) {
-        return packfiles.stream()
-            .filter(x -> x.getFileEntry(hash) != null)
-            .toList();
+        return index.findAll(hash);
+    }
+
+    @NotNull
+    public CompletableFuture<ByteBuffer> extractAsync(@NotNull String path) {
+        return extractAsync(getPathHash(getNormalizedPath(path)));
+    }
+
+    /**
+     * Extracts contents of a file in background. The file is looked up as if by {@link #findAny(long)}.
+     * <p>
+     * Concurrent requests for the same file are coalesced into a single read. Each request receives its own
+     * buffer, but buffers of coalesced requests share the same contents, so they must not be modified.
+     *
+     * @return a future that completes with contents of the file, or completes exceptionally with
+     * {@link IllegalArgumentException} if there's no such file or with {@link IOException} if it can't be read
+     */
+    @NotNull
+    public CompletableFuture<ByteBuffer> extractAsync(long hash) {
+        final Packfile packfile = findAny(hash);
+
+        if (packfile == null) {
+            return CompletableFuture.failedFuture(new IllegalArgumentException("Can't find path 0x" + Long.toHexString(hash)));
+        }
+
+        final CompletableFuture<ByteBuffer> future = new CompletableFuture<>();
+        final CompletableFuture<ByteBuffer> existing = pending.putIfAbsent(hash, future);
+
+        if (existing != null) {
+            return existing.thenApply(ByteBuffer::duplicate);
+        }
+
+        try {
+            executor.execute(() -> {
+                try {
+                    future.complete(ByteBuffer.wrap(packfile.extract(hash)));
+                } catch (Throwable e) {
+                    future.completeExceptionally(e);
+                } finally {
+                    pending.remove(hash, future);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            pending.remove(hash, future);
+            future.completeExceptionally(new IOException("Packfile manager is closed", e));
+        }
+
+        // Callers get dependent futures, so cancelling one of them doesn't affect the others
+        return future.thenApply(ByteBuffer::duplicate);
+    }
+
+    /**
+     * Extracts contents of multiple files. Files are looked up as if by {@link #findAny(long)}.
+     * <p>
+     * Files of each packfile are read at once using {@link PackfileReadScheduler}, which is preferable
+     * to extracting them one by one when reading many files, e.g. during a bulk scan.
+     *
+     * @throws IllegalArgumentException if any of the files can't be found
+     */
+    public void extractAll(@NotNull Collection<Long> hashes, @NotNull PackfileReadScheduler.Callback callback) throws IOException {
+        final Map<Packfile, List<Long>> requests = new LinkedHashMap<>();
+
+        for (long hash : hashes) {
+            final Packfile packfile = findAny(hash);
+
+            if (packfile == null) {
+                throw new IllegalArgumentException("Can't find path 0x" + Long.toHexString(hash));
+            }
+
+            requests.computeIfAbsent(packfile, key -> new ArrayList<>()).add(hash);
+        }
+
+        for (Map.Entry<Packfile, List<Long>> entry : requests.entrySet()) {
+            new PackfileReadScheduler(entry.getKey()).read(entry.getValue(), callback);
+        }
     }
 
     @NotNull
@@ -132,13 +350,43 @@ public class PackfileManager implements Closeable {
         return packfiles;
     }
 
+    @NotNull
+    public ChunkCache getChunkCache() {
+        return cache;
+    }
+
+    /**
+     * Returns a pool of channels of mounted packfiles. Bounds the number of simultaneously open files.
+     */
+    @NotNull
+    public ChannelPool getChannelPool() {
+        return channels;
+    }
+
     @Override
     public void close() throws IOException {
+        executor.shutdownNow();
+
+        // Reads that haven't started yet won't ever run
+        for (CompletableFuture<ByteBuffer> future : pending.values()) {
+            future.completeExceptionally(new IOException("Packfile manager is closed"));
+        }
+
+        pending.clear();
+
         for (Packfile packfile : packfiles) {
             packfile.close();
         }
 
         packfiles.clear();
+        index.clear();
+
+        log.debug("Chunk cache statistics: {}", cache.getStatistics());
+        log.debug("Channel pool statistics: {}", channels.getStatistics());
+        cache.clear();
     }
 
+    private static boolean isPatch(@NotNull Packfile packfile) {
+        return packfile.getPath().getFileName().toString().toLowerCase(Locale.ROOT).startsWith(PATCH_PREFIX);
+    }
 }
@@ -0,0 +1,168 @@
+package com.shade.decima.model.packfile;
+
+import com.shade.util.NotNull;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+import static com.shade.decima.model.packfile.PackfileBase.*;
+
+/**
+ * Reads multiple files of a packfile at once, turning random reads into sequential ones.
+ * <p>
+ * Chunks required by requested files are sorted by their position in the packfile, and chunks that
+ * are adjacent or close to each other are fetched with a single read. Fetched chunks are decompressed
+ * in parallel while the following chunks are being read.
+ * <p>
+ * Files are processed in windows of limited size, so memory usage doesn't depend on the number of requested files.
+ * Chunks found in the chunk cache are reused, but freshly decompressed chunks are not put there.
+ */
+public class PackfileReadScheduler {
+    /**
+     * Maximum distance between chunks that are fetched with a single read. Reading a small gap is cheaper than seeking over it.
+     */
+    private static final int MAX_GAP_SIZE = 64 * 1024;
+
+    /**
+     * Maximum size of a single read.
+     */
+    private static final int MAX_READ_SIZE = 16 * 1024 * 1024;
+
+    /**
+     * Maximum total size of decompressed chunks of files processed at once. Exceeded if a single file is larger.
+     */
+    private static final long MAX_WINDOW_SIZE = 64 * 1024 * 1024;
+
+    private final Packfile packfile;
+
+    public PackfileReadScheduler(@NotNull Packfile packfile) {
+        this.packfile = packfile;
+    }
+
+    /**
+     * Reads contents of the given files.
+     * <p>
+     * Files are passed to the callback in the order they're stored in the packfile rather than in the requested order.
+     *
+     * @throws IllegalArgumentException if any of the files is not present in the packfile
+     */
+    public void read(@NotNull Collection<Long> hashes, @NotNull Callback callback) throws IOException {
+        packfile.load();
+
+        final List<Request> requests = new ArrayList<>(hashes.size());
+
+        for (long hash : hashes) {
+            final FileEntry file = packfile.getFileEntry(hash);
+
+            if (file == null) {
+                throw new IllegalArgumentException("Can't find path 0x" + Long.toHexString(hash) + " in this archive");
+            }
+
+            requests.add(new Request(file, packfile.getChunkEntries(file.span())));
+        }
+
+        // Files that are close to each other in the packfile end up in the same window
+        requests.sort(Comparator.comparingLong(request -> request.chunks().get(0).compressed().offset()));
+
+        for (int start = 0, end; start < requests.size(); start = end) {
+            final Map<Long, ChunkEntry> chunks = new HashMap<>();
+            long size = 0;
+
+            for (end = start; end < requests.size() && size < MAX_WINDOW_SIZE; end++) {
+                for (ChunkEntry chunk : requests.get(end).chunks()) {
+                    if (chunks.putIfAbsent(chunk.decompressed().offset(), chunk) == null) {
+                        size += chunk.decompressed().size();
+                    }
+                }
+            }
+
+            read(requests.subList(start, end), chunks.values(), callback);
+        }
+    }
+
+    private void read(@NotNull List<Request> requests, @NotNull Collection<ChunkEntry> chunks, @NotNull Callback callback) throws IOException {
+        final Map<Long, Future<byte[]>> data = new HashMap<>(chunks.size());
+        final List<ChunkEntry> missing = new ArrayList<>(chunks.size());
+
+        for (ChunkEntry chunk : chunks) {
+            final byte[] cached = packfile.getCachedChunkData(chunk);
+
+            if (cached != null) {
+                data.put(chunk.decompressed().offset(), CompletableFuture.completedFuture(cached));
+            } else {
+                missing.add(chunk);
+            }
+        }
+
+        missing.sort(Comparator.comparingLong(chunk -> chunk.compressed().offset()));
+
+        try {
+            for (int start = 0, end; start < missing.size(); start = end) {
+                final long offset = missing.get(start).compressed().offset();
+                long length = missing.get(start).compressed().size();
+
+                // Mapped packfiles don't benefit from larger reads, and a mapping may not cover them entirely
+                for (end = start + 1; end < missing.size() && !packfile.isMapped(); end++) {
+                    final Span span = missing.get(end).compressed();
+                    final long merged = Math.max(length, span.offset() + span.size() - offset);
+
+                    if (span.offset() - offset - length > MAX_GAP_SIZE || merged > MAX_READ_SIZE) {
+                        break;
+                    }
+
+                    length = merged;
+                }
+
+                final ByteBuffer buffer = ByteBuffer.allocate(Math.toIntExact(length));
+
+                packfile.readRaw(offset, buffer);
+
+                for (ChunkEntry chunk : missing.subList(start, end)) {
+                    final ByteBuffer raw = buffer.slice((int) (chunk.compressed().offset() - offset), chunk.compressed().size());
+                    data.put(chunk.decompressed().offset(), Packfile.EXTRACT_EXECUTOR.submit(() -> packfile.decompressChunk(chunk, raw)));
+                }
+            }
+
+            for (Request request : requests) {
+                final Span span = request.file().span();
+                final byte[] result = new byte[span.size()];
+
+                for (ChunkEntry chunk : request.chunks()) {
+                    final byte[] chunkData = data.get(chunk.decompressed().offset()).get();
+                    final long from = Math.max(span.offset(), chunk.decompressed().offset());
+                    final long to = Math.min(span.offset() + span.size(), chunk.decompressed().offset() + chunk.decompressed().size());
+
+                    if (from < to) {
+                        System.arraycopy(chunkData, (int) (from - chunk.decompressed().offset()), result, (int) (from - span.offset()), (int) (to - from));
+                    }
+                }
+
+                callback.accept(request.file().hash(), result);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while reading files of " + packfile.getName());
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException io) {
+                throw io;
+            }
+            throw new IOException("Error reading files of " + packfile.getName(), e.getCause());
+        } finally {
+            for (Future<byte[]> future : data.values()) {
+                future.cancel(false);
+            }
+        }
+    }
+
+    @FunctionalInterface
+    public interface Callback {
+        void accept(long hash, @NotNull byte[] data) throws IOException;
+    }
+
+    private static record Request(@NotNull FileEntry file, @NotNull List<ChunkEntry> chunks) {}
+}
@@ -0,0 +1,264 @@
+package com.shade.decima.model.packfile;
+
+import com.shade.platform.model.util.IOUtils;
+import com.shade.util.NotNull;
+import com.shade.util.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+
+import static com.shade.decima.model.packfile.PackfileBase.*;
+
+/**
+ * A persistent cache of decoded packfile tables.
+ * <p>
+ * Tables of each packfile are stored in a separate file as primitive columns, so loading them
+ * is a matter of reading the file and copying the columns, without decrypting individual entries.
+ * Keys used to decrypt data of chunks of encrypted packfiles are stored alongside them.
+ * <p>
+ * Cached tables are only used if the size and the modification time of the packfile, as well as
+ * the key of its header, match the ones the tables were cached with.
+ */
+public class PackfileTableCache {
+    private static final Logger log = LoggerFactory.getLogger(PackfileTableCache.class);
+
+    private static final int MAGIC = 0x4C425450; // 'PTBL'
+    private static final int VERSION = 2;
+    private static final String EXTENSION = ".tables";
+
+    private final Path root;
+
+    public PackfileTableCache(@NotNull Path root) {
+        this.root = root;
+    }
+
+    /**
+     * Loads cached tables of a packfile.
+     *
+     * @return cached tables, or {@code null} if there are none or they're outdated
+     */
+    @Nullable
+    Tables load(@NotNull Path packfile, @NotNull BasicFileAttributes attributes, @NotNull Header header) {
+        final Contents contents = read(packfile, attributes, header, false);
+
+        if (contents == null) {
+            return null;
+        }
+
+        try {
+            final FileTable files = FileTable.read(contents.buffer(), contents.filesCount());
+            final ChunkTable chunks = ChunkTable.read(contents.buffer(), contents.chunksCount(), header.isEncrypted());
+
+            return new Tables(files, chunks);
+        } catch (RuntimeException e) {
+            invalidate(packfile, e);
+            return null;
+        }
+    }
+
+    /**
+     * Loads only hashes of files from cached tables of a packfile.
+     *
+     * @return hashes sorted as unsigned numbers, or {@code null} if there are no tables or they're outdated
+     */
+    @Nullable
+    long[] loadHashes(@NotNull Path packfile, @NotNull BasicFileAttributes attributes, @NotNull Header header) {
+        final Contents contents = read(packfile, attributes, header, true);
+
+        if (contents == null) {
+            return null;
+        }
+
+        try {
+            return FileTable.readHashes(contents.buffer(), contents.filesCount());
+        } catch (RuntimeException e) {
+            invalidate(packfile, e);
+            return null;
+        }
+    }
+
+    /**
+     * Reads a cache file after validating its header.
+     * <p>
+     * Hashes of files are stored first, so reading only them doesn't require reading the whole file.
+     * Cache files that are truncated or otherwise corrupted are deleted.
+     *
+     * @param hashesOnly whether to read only hashes of files rather than all tables
+     */
+    @Nullable
+    private Contents read(@NotNull Path packfile, @NotNull BasicFileAttributes attributes, @NotNull Header header, boolean hashesOnly) {
+        final Path path = getCachePath(packfile);
+
+        if (Files.notExists(path)) {
+            return null;
+        }
+
+        final byte[] name = getName(packfile);
+        final int headerSize = getHeaderSize(name);
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() < headerSize) {
+                invalidate(packfile, null);
+                return null;
+            }
+
+            final ByteBuffer buffer = read(channel, 0, headerSize);
+
+            if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+                log.debug("Ignoring cached tables of {} because of unsupported format", packfile);
+                return null;
+            }
+
+            final long size = buffer.getLong();
+            final long modified = buffer.getLong();
+            final int magic = buffer.getInt();
+            final int key = buffer.getInt();
+            final int filesCount = buffer.getInt();
+            final int chunksCount = buffer.getInt();
+            final int nameLength = buffer.getInt();
+
+            // Two packfiles may share the same cache file if hashes of their paths collide
+            if (size != attributes.size()
+                || modified != attributes.lastModifiedTime().toMillis()
+                || magic != header.magic()
+                || key != header.key()
+                || nameLength != name.length
+                || !buffer.slice(buffer.position(), nameLength).equals(ByteBuffer.wrap(name))
+            ) {
+                log.debug("Ignoring outdated cached tables of {}", packfile);
+                return null;
+            }
+
+            // Duplicate entries are dropped from tables, so they may contain fewer entries than the header states
+            if (filesCount < 0 || filesCount > header.fileEntryCount()
+                || chunksCount < 0 || chunksCount > header.chunkEntryCount()
+                || channel.size() != headerSize + getTablesSize(filesCount, chunksCount, header)
+            ) {
+                invalidate(packfile, null);
+                return null;
+            }
+
+            final int length = hashesOnly ? filesCount * Long.BYTES : getTablesSize(filesCount, chunksCount, header);
+
+            return new Contents(read(channel, headerSize, length), filesCount, chunksCount);
+        } catch (IOException e) {
+            log.warn("Can't load cached tables of {}", packfile, e);
+            return null;
+        } catch (RuntimeException e) {
+            invalidate(packfile, e);
+            return null;
+        }
+    }
+
+    /**
+     * Deletes a corrupted cache file, so it's not read again until tables are stored anew.
+     */
+    private void invalidate(@NotNull Path packfile, @Nullable Exception cause) {
+        log.warn("Deleting corrupted cached tables of {}", packfile, cause);
+
+        try {
+            Files.deleteIfExists(getCachePath(packfile));
+        } catch (IOException e) {
+            log.warn("Can't delete cached tables of {}", packfile, e);
+        }
+    }
+
+    /**
+     * Stores tables of a packfile. Failures are logged, but not propagated, since the cache is optional.
+     */
+    void store(@NotNull Path packfile, @NotNull BasicFileAttributes attributes, @NotNull Header header, @NotNull Tables tables) {
+        final Path path = getCachePath(packfile);
+        final byte[] name = getName(packfile);
+        final int headerSize = getHeaderSize(name);
+        final int tablesSize = getTablesSize(tables.files().size(), tables.chunks().size(), header);
+        final ByteBuffer buffer = ByteBuffer.allocate(headerSize + tablesSize).order(ByteOrder.LITTLE_ENDIAN);
+
+        buffer.putInt(MAGIC);
+        buffer.putInt(VERSION);
+        buffer.putLong(attributes.size());
+        buffer.putLong(attributes.lastModifiedTime().toMillis());
+        buffer.putInt(header.magic());
+        buffer.putInt(header.key());
+        buffer.putInt(tables.files().size());
+        buffer.putInt(tables.chunks().size());
+        buffer.putInt(name.length);
+        buffer.put(name);
+        buffer.position(headerSize);
+
+        tables.files().write(buffer);
+        tables.chunks().write(buffer);
+
+        Path temp = null;
+
+        try {
+            Files.createDirectories(root);
+
+            // Write to a temporary file first, so concurrent readers never observe a partially written file
+            temp = Files.createTempFile(root, null, EXTENSION);
+
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                buffer.flip();
+
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+            }
+
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            if (temp != null) {
+                try {
+                    Files.deleteIfExists(temp);
+                } catch (IOException suppressed) {
+                    e.addSuppressed(suppressed);
+                }
+            }
+
+            log.warn("Can't store cached tables of {}", packfile, e);
+        }
+    }
+
+    @NotNull
+    private Path getCachePath(@NotNull Path packfile) {
+        return root.resolve("%016x%s".formatted(getPathHash(packfile.toAbsolutePath().normalize().toString()), EXTENSION));
+    }
+
+    @NotNull
+    private static ByteBuffer read(@NotNull FileChannel channel, long position, int length) throws IOException {
+        final ByteBuffer buffer = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new EOFException();
+            }
+        }
+
+        return buffer.flip();
+    }
+
+    private static int getHeaderSize(@NotNull byte[] name) {
+        return IOUtils.alignUp(Integer.BYTES * 7 + Long.BYTES * 2 + name.length, Long.BYTES);
+    }
+
+    private static int getTablesSize(int filesCount, int chunksCount, @NotNull Header header) {
+        return filesCount * Tables.ENTRY_BYTES + ChunkTable.getBytes(chunksCount, header.isEncrypted());
+    }
+
+    @NotNull
+    private static byte[] getName(@NotNull Path packfile) {
+        return packfile.toAbsolutePath().normalize().toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Contents of a cache file starting at the beginning of the tables.
+     */
+    private static record Contents(@NotNull ByteBuffer buffer, int filesCount, int chunksCount) {}
+}
@@ -1,21 +1,38 @@
 package com.shade.decima.model.packfile;
 
+import com.shade.decima.model.packfile.resource.PackfileResource;
 import com.shade.decima.model.packfile.resource.Resource;
+import com.shade.decima.model.util.Codec;
 import com.shade.decima.model.util.Compressor;
 import com.shade.platform.model.runtime.ProgressMonitor;
+import com.shade.platform.model.util.IOUtils;
 import com.shade.util.NotNull;
 
 import java.io.Closeable;
+import java.io.EOFException;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
 import java.nio.channels.SeekableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.security.SecureRandom;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.random.RandomGenerator;
 
 public class PackfileWriter implements Closeable {
+    private static final int BACKUP_MAGIC = 0x4B414250; // 'PBAK'
+    private static final int BACKUP_HEADER_SIZE = Integer.BYTES * 2 + Long.BYTES;
+
     private final SortedSet<Resource> resources;
+    private Packfile source;
 
     public PackfileWriter() {
         this.resources = new TreeSet<>(Comparator.comparingLong(Resource::hash));
@@ -25,23 +42,452 @@ public class PackfileWriter implements Closeable {
         return resources.add(resource);
     }
 
+    /**
+     * Adds all files of the given packfile that are not replaced by resources added to this writer.
+     * <p>
+     * Chunks that contain only such files are copied verbatim, without decompressing and compressing them again;
+     * they are only re-encrypted if encryption of the output differs. Remaining files are recompressed.
+     * <p>
+     * The packfile must stay open until {@link #write} is finished.
+     */
+    public void addPackfile(@NotNull Packfile packfile) {
+        if (source != null) {
+            throw new IllegalStateException("Can't add more than one packfile");
+        }
+
+        source = packfile;
+    }
+
+    /**
+     * Writes a packfile to the given channel.
+     * <p>
+     * Data is written first, followed by the header with file and chunk tables. Space for the tables is reserved
+     * beforehand using sizes of added resources. If some of them are of {@link Resource#UNKNOWN_SIZE unknown size}
+     * and the reserved space turns out to be insufficient, chunks that overlap the tables are moved to the end of
+     * the file, in which case the channel must be readable as well.
+     *
+     * @return size of the packfile
+     */
     public long write(
         @NotNull ProgressMonitor monitor,
         @NotNull SeekableByteChannel channel,
-        @NotNull Compressor compressor,
+        @NotNull Codec compressor,
         @NotNull Options options
     ) throws IOException {
+        checkSizes(resources);
+
         final RandomGenerator random = new SecureRandom();
         final Set<PackfileBase.FileEntry> files = new TreeSet<>();
         final Set<PackfileBase.ChunkEntry> chunks = new TreeSet<>();
+        final Passthrough passthrough = source != null ? computePassthrough(source) : Passthrough.EMPTY;
+        final SortedSet<Resource> toWrite = new TreeSet<>(resources);
+
+        toWrite.addAll(passthrough.resources());
 
-        try (ProgressMonitor.Task task = monitor.begin("Write packfile", 2)) {
-            channel.position(computeHeaderSize());
-            writeData(task.split(1), channel, compressor, random, options, files, chunks);
+        final int reservedSize = computeHeaderSize(
+            toWrite.size() + passthrough.files().size(),
+            computeChunksCount(toWrite) + passthrough.chunks().size()
+        );
+
+        try (ProgressMonitor.Task task = monitor.begin("Write packfile", 4)) {
+            channel.position(reservedSize);
+
+            final long offset = writePassthrough(task.split(1), channel, random, options, passthrough, files, chunks);
+            writeData(task.split(1), channel, compressor, random, options, offset, toWrite, files, chunks);
+
+            final int headerSize = Math.max(reservedSize, computeHeaderSize(files.size(), chunks.size()));
+            relocateChunks(task.split(1), channel, headerSize, chunks);
+
+            final long fileSize = chunks.stream()
+                .mapToLong(chunk -> chunk.compressed().offset() + chunk.compressed().size())
+                .reduce(headerSize, Math::max);
 
             channel.position(0);
-            return writeHeader(task.split(1), channel, random, options, files, chunks).fileSize();
+            return writeHeader(task.split(1), channel, random, options, headerSize, fileSize, files, chunks).fileSize();
+        } finally {
+            for (Resource resource : passthrough.resources()) {
+                resource.close();
+            }
+        }
+    }
+
+    /**
+     * Appends resources to an existing packfile in-place.
+     * <p>
+     * New chunks are written at the end of the file and only the header with file and chunk tables is rewritten,
+     * so the cost is proportional to the size of added resources rather than to the size of the packfile.
+     * Files of the packfile that are replaced by added resources are dropped from the tables, but their data is
+     * left in the file. If the new tables don't fit in place, chunks that follow them are moved to the end of the file.
+     * <p>
+     * Encryption of the existing packfile is preserved regardless of {@link Options#encrypt()}.
+     * <p>
+     * The packfile stays intact until all data is written and the header with tables is rewritten at the very end.
+     * Before that, the part of the packfile they overwrite is saved to {@code backup}, which is deleted once they're
+     * written. If appending fails or is interrupted while they're being written, the packfile is restored
+     * from the backup, either right away or by the next call to this method.
+     *
+     * @param channel a channel of the existing packfile opened for both reading and writing
+     * @param backup  a file for keeping the overwritten part of the packfile until the new header with tables is written
+     * @return size of the packfile
+     */
+    public long append(
+        @NotNull ProgressMonitor monitor,
+        @NotNull SeekableByteChannel channel,
+        @NotNull Codec compressor,
+        @NotNull Options options,
+        @NotNull Path backup
+    ) throws IOException {
+        checkSizes(resources);
+        restore(channel, backup);
+
+        final RandomGenerator random = new SecureRandom();
+        final Set<PackfileBase.FileEntry> files = new TreeSet<>();
+        final Set<PackfileBase.ChunkEntry> chunks = new TreeSet<>();
+
+        channel.position(0);
+
+        // The packfile is not closed because the channel is owned by the caller
+        final Packfile existing = new Packfile(channel, compressor, null, Path.of(""));
+        final Options effective = new Options(options.compression(), existing.header.isEncrypted(), options.threads(), options.blocksInFlight());
+        final Set<Long> replaced = new HashSet<>();
+
+        for (Resource resource : resources) {
+            replaced.add(resource.hash());
+        }
+
+        long offset = 0;
+
+        for (PackfileBase.FileEntry file : existing.getFileEntries()) {
+            if (replaced.contains(file.hash())) {
+                continue;
+            }
+
+            files.add(new PackfileBase.FileEntry(files.size(), file.key(), file.hash(), file.span()));
+
+            if (file.span().size() > 0) {
+                for (PackfileBase.ChunkEntry chunk : existing.getChunkEntries(file.span())) {
+                    if (chunks.add(chunk)) {
+                        offset = Math.max(offset, chunk.decompressed().offset() + chunk.decompressed().size());
+                    }
+                }
+            }
+        }
+
+        final int reservedSize = computeHeaderSize(
+            files.size() + resources.size(),
+            chunks.size() + computeChunksCount(resources)
+        );
+
+        final long originalSize = channel.size();
+
+        try (ProgressMonitor.Task task = monitor.begin("Append to packfile", 3)) {
+            channel.position(Math.max(originalSize, reservedSize));
+            writeData(task.split(1), channel, compressor, random, effective, IOUtils.alignUp(offset, Compressor.BLOCK_SIZE_BYTES), resources, files, chunks);
+
+            final int headerSize = Math.max(reservedSize, computeHeaderSize(files.size(), chunks.size()));
+            relocateChunks(task.split(1), channel, headerSize, chunks);
+
+            // New data must reach the disk before the header that refers to it
+            force(channel);
+            backup(channel, backup, originalSize, (int) Math.min(originalSize, headerSize));
+
+            final long size;
+
+            try {
+                channel.position(0);
+                size = writeHeader(task.split(1), channel, random, effective, headerSize, channel.size(), files, chunks).fileSize();
+                force(channel);
+            } catch (IOException e) {
+                try {
+                    restore(channel, backup);
+                } catch (IOException suppressed) {
+                    e.addSuppressed(suppressed);
+                }
+
+                throw e;
+            }
+
+            Files.delete(backup);
+
+            return size;
+        }
+    }
+
+    /**
+     * Saves the original size of a packfile and its first {@code length} bytes that are about to be overwritten
+     * by the new header with tables, so it can be restored with {@link #restore}.
+     */
+    private static void backup(@NotNull SeekableByteChannel channel, @NotNull Path backup, long size, int length) throws IOException {
+        final ByteBuffer buffer = ByteBuffer.allocate(BACKUP_HEADER_SIZE + length).order(ByteOrder.LITTLE_ENDIAN);
+
+        buffer.putInt(BACKUP_MAGIC);
+        buffer.putLong(size);
+        buffer.putInt(length);
+
+        channel.position(0);
+
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) {
+                throw new EOFException();
+            }
+        }
+
+        try (FileChannel output = FileChannel.open(backup, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            buffer.flip();
+
+            while (buffer.hasRemaining()) {
+                output.write(buffer);
+            }
+
+            output.force(false);
+        }
+    }
+
+    /**
+     * Restores a packfile from a backup left by a failed or interrupted {@link #append}, if there's one, and deletes the backup.
+     */
+    private static void restore(@NotNull SeekableByteChannel channel, @NotNull Path backup) throws IOException {
+        if (Files.notExists(backup)) {
+            return;
+        }
+
+        final ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(backup)).order(ByteOrder.LITTLE_ENDIAN);
+
+        if (buffer.remaining() >= BACKUP_HEADER_SIZE) {
+            if (buffer.getInt() != BACKUP_MAGIC) {
+                throw new IOException("File " + backup + " is not a packfile backup");
+            }
+
+            final long size = buffer.getLong();
+            final int length = buffer.getInt();
+
+            // The header is only rewritten after the backup is complete, so an incomplete backup is of no use
+            if (buffer.remaining() == length) {
+                channel.position(0);
+
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+
+                channel.truncate(size);
+                force(channel);
+            }
+        }
+
+        Files.delete(backup);
+    }
+
+    private static void force(@NotNull SeekableByteChannel channel) throws IOException {
+        if (channel instanceof FileChannel fc) {
+            fc.force(false);
+        }
+    }
+
+    /**
+     * Moves chunks whose data starts before {@code end} to the current position of the channel,
+     * which is expected to point to the end of the data.
+     * <p>
+     * Chunk data is copied as is, because its encryption depends on the decompressed span only.
+     */
+    private static void relocateChunks(
+        @NotNull ProgressMonitor monitor,
+        @NotNull SeekableByteChannel channel,
+        long end,
+        @NotNull Set<PackfileBase.ChunkEntry> chunks
+    ) throws IOException {
+        final List<PackfileBase.ChunkEntry> overlapping = chunks.stream()
+            .filter(chunk -> chunk.compressed().offset() < end)
+            .toList();
+
+        final ByteBuffer buffer = ByteBuffer.allocate(Compressor.getCompressedSize(Compressor.BLOCK_SIZE_BYTES));
+
+        long offset = channel.position();
+
+        try (ProgressMonitor.Task task = monitor.begin("Relocate chunks", overlapping.size())) {
+            for (PackfileBase.ChunkEntry chunk : overlapping) {
+                buffer.clear().limit(chunk.compressed().size());
+                channel.position(chunk.compressed().offset());
+
+                while (buffer.hasRemaining()) {
+                    if (channel.read(buffer) < 0) {
+                        throw new EOFException("Unexpected end of file while relocating chunk at " + chunk.compressed().offset());
+                    }
+                }
+
+                buffer.flip();
+                channel.position(offset);
+
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+
+                chunks.remove(chunk);
+                chunks.add(new PackfileBase.ChunkEntry(
+                    chunk.decompressed(),
+                    new PackfileBase.Span(offset, chunk.compressed().size(), chunk.compressed().key())
+                ));
+
+                offset += chunk.compressed().size();
+
+                task.worked(1);
+            }
+        }
+    }
+
+    /**
+     * Determines which chunks of the source packfile can be copied as is and which files must be recompressed.
+     * <p>
+     * A chunk can be copied if all files overlapping it are kept and it's a full-sized block, so that chunks
+     * written after it are still aligned. Copied chunks are placed one after another at the beginning of
+     * the decompressed data, and files that lie entirely within them are moved accordingly. Other files are
+     * returned as resources to be recompressed; resources added to this writer are left untouched.
+     */
+    @NotNull
+    private Passthrough computePassthrough(@NotNull Packfile source) {
+        final Set<Long> replaced = new HashSet<>();
+        final Set<Long> dirty = new HashSet<>();
+
+        for (Resource resource : resources) {
+            replaced.add(resource.hash());
+        }
+
+        for (PackfileBase.ChunkEntry chunk : source.getChunkEntries()) {
+            if (chunk.decompressed().size() != Compressor.BLOCK_SIZE_BYTES) {
+                dirty.add(chunk.decompressed().offset());
+            }
         }
+
+        for (PackfileBase.FileEntry file : source.getFileEntries()) {
+            if (replaced.contains(file.hash()) && file.span().size() > 0) {
+                for (PackfileBase.ChunkEntry chunk : source.getChunkEntries(file.span())) {
+                    dirty.add(chunk.decompressed().offset());
+                }
+            }
+        }
+
+        final SortedMap<Long, PackfileBase.ChunkEntry> used = new TreeMap<>();
+        final List<PackfileBase.FileEntry> files = new ArrayList<>();
+        final List<Resource> recompressed = new ArrayList<>();
+
+        for (PackfileBase.FileEntry file : source.getFileEntries()) {
+            if (replaced.contains(file.hash())) {
+                continue;
+            }
+
+            final Collection<PackfileBase.ChunkEntry> fileChunks = file.span().size() > 0
+                ? source.getChunkEntries(file.span())
+                : List.of();
+
+            if (fileChunks.isEmpty() || fileChunks.stream().anyMatch(chunk -> dirty.contains(chunk.decompressed().offset()))) {
+                recompressed.add(new PackfileResource(source, file));
+                continue;
+            }
+
+            for (PackfileBase.ChunkEntry chunk : fileChunks) {
+                used.put(chunk.decompressed().offset(), chunk);
+            }
+
+            files.add(file);
+        }
+
+        final Map<Long, Long> offsets = new HashMap<>();
+
+        for (Long offset : used.keySet()) {
+            offsets.put(offset, (long) offsets.size() * Compressor.BLOCK_SIZE_BYTES);
+        }
+
+        return new Passthrough(source, List.copyOf(used.values()), files, recompressed, offsets);
+    }
+
+    /**
+     * Copies chunks selected by {@link #computePassthrough} and adds entries for files contained in them.
+     *
+     * @return offset of the decompressed data that follows the copied chunks
+     */
+    private long writePassthrough(
+        @NotNull ProgressMonitor monitor,
+        @NotNull SeekableByteChannel channel,
+        @NotNull RandomGenerator random,
+        @NotNull Options options,
+        @NotNull Passthrough passthrough,
+        @NotNull Set<PackfileBase.FileEntry> files,
+        @NotNull Set<PackfileBase.ChunkEntry> chunks
+    ) throws IOException {
+        if (passthrough.chunks().isEmpty()) {
+            return 0;
+        }
+
+        final Packfile source = passthrough.source();
+        final boolean decrypt = source.header.isEncrypted();
+        final ByteBuffer buffer = ByteBuffer.allocate(Compressor.getCompressedSize(Compressor.BLOCK_SIZE_BYTES));
+
+        long decompressedOffset = 0;
+        long compressedOffset = channel.position();
+
+        try (ProgressMonitor.Task task = monitor.begin("Copy unchanged chunks", passthrough.chunks().size())) {
+            for (PackfileBase.ChunkEntry chunk : passthrough.chunks()) {
+                final PackfileBase.Span decompressed = new PackfileBase.Span(
+                    passthrough.offsets().get(chunk.decompressed().offset()),
+                    chunk.decompressed().size(),
+                    rekey(chunk.decompressed().key(), decrypt, options.encrypt(), random)
+                );
+
+                final PackfileBase.Span compressed = new PackfileBase.Span(
+                    compressedOffset,
+                    chunk.compressed().size(),
+                    rekey(chunk.compressed().key(), decrypt, options.encrypt(), random)
+                );
+
+                buffer.clear().limit(chunk.compressed().size());
+                source.readChunk(chunk, buffer);
+                buffer.flip();
+
+                if (!decrypt || !options.encrypt() || !decompressed.equals(chunk.decompressed())) {
+                    if (decrypt) {
+                        PackfileBase.ChunkEntry.swizzle(buffer, chunk.decompressed());
+                    }
+
+                    if (options.encrypt()) {
+                        PackfileBase.ChunkEntry.swizzle(buffer, decompressed);
+                    }
+                }
+
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+
+                chunks.add(new PackfileBase.ChunkEntry(decompressed, compressed));
+                decompressedOffset = decompressed.offset() + decompressed.size();
+                compressedOffset += compressed.size();
+
+                task.worked(1);
+            }
+        }
+
+        for (PackfileBase.FileEntry file : passthrough.files()) {
+            final long chunkOffset = file.span().offset() & -Compressor.BLOCK_SIZE_BYTES;
+            final long offset = passthrough.offsets().get(chunkOffset) + file.span().offset() - chunkOffset;
+
+            files.add(new PackfileBase.FileEntry(
+                files.size(),
+                rekey(file.key(), decrypt, options.encrypt(), random),
+                file.hash(),
+                new PackfileBase.Span(offset, file.span().size(), rekey(file.span().key(), decrypt, options.encrypt(), random))
+            ));
+        }
+
+        return decompressedOffset;
+    }
+
+    /**
+     * Keeps existing keys if both the source and the output are encrypted, so that unmoved chunks stay byte-identical.
+     */
+    private static int rekey(int key, boolean decrypt, boolean encrypt, @NotNull RandomGenerator random) {
+        if (!encrypt) {
+            return 0;
+        }
+
+        return decrypt ? key : random.nextInt();
     }
 
     @NotNull
@@ -50,6 +496,8 @@ public class PackfileWriter implements Closeable {
         @NotNull SeekableByteChannel channel,
         @NotNull RandomGenerator random,
         @NotNull Options options,
+        int headerSize,
+        long fileSize,
         @NotNull Set<PackfileBase.FileEntry> files,
         @NotNull Set<PackfileBase.ChunkEntry> chunks
     ) throws IOException {
@@ -57,12 +505,6 @@ public class PackfileWriter implements Closeable {
             .mapToLong(entry -> entry.decompressed().size())
             .sum();
 
-        final long compressedSize = chunks.stream()
-            .mapToLong(entry -> entry.compressed().size())
-            .sum();
-
-        final int headerSize = computeHeaderSize();
-
         final ByteBuffer buffer = ByteBuffer
             .allocate(headerSize)
             .order(ByteOrder.LITTLE_ENDIAN);
@@ -70,7 +512,7 @@ public class PackfileWriter implements Closeable {
         final PackfileBase.Header header = new PackfileBase.Header(
             options.encrypt() ? PackfileBase.MAGIC_ENCRYPTED : PackfileBase.MAGIC_PLAIN,
             options.encrypt() ? random.nextInt() : 0,
-            compressedSize + headerSize,
+            fileSize,
             decompressedSize,
             files.size(),
             chunks.size(),
@@ -98,23 +540,34 @@ public class PackfileWriter implements Closeable {
     private void writeData(
         @NotNull ProgressMonitor monitor,
         @NotNull SeekableByteChannel channel,
-        @NotNull Compressor compressor,
+        @NotNull Codec compressor,
         @NotNull RandomGenerator random,
         @NotNull Options options,
+        long offset,
+        @NotNull Collection<Resource> resources,
         @NotNull Set<PackfileBase.FileEntry> files,
         @NotNull Set<PackfileBase.ChunkEntry> chunks
     ) throws IOException {
         final Queue<Resource> pending = new ArrayDeque<>(resources);
-        final ByteBuffer decompressed = ByteBuffer.allocate(Compressor.BLOCK_SIZE_BYTES);
-
-        long fileDataOffset = 0;
-        long chunkDataDecompressedOffset = 0;
+        final Queue<PendingChunk> inflight = new ArrayDeque<>();
+        final Queue<ByteBuffer> buffers = new ArrayDeque<>();
+        final Queue<ByteBuffer> outputs = new ArrayDeque<>();
+        final ExecutorService executor = Executors.newFixedThreadPool(options.threads());
+
+        long fileDataOffset = offset;
+        long fileDataSize = 0;
+        long chunkDataDecompressedOffset = offset;
         long chunkDataCompressedOffset = channel.position();
 
         try (ProgressMonitor.Task task = monitor.begin("Write files", pending.size())) {
             while (!pending.isEmpty()) {
                 boolean skip = true;
 
+                final ByteBuffer decompressed = Objects.requireNonNullElseGet(
+                    buffers.poll(),
+                    () -> ByteBuffer.allocateDirect(Compressor.BLOCK_SIZE_BYTES)
+                );
+
                 decompressed.clear();
 
                 while (decompressed.hasRemaining() && !pending.isEmpty()) {
@@ -124,34 +577,47 @@ public class PackfileWriter implements Closeable {
                     if (length <= 0) {
                         pending.remove().close();
 
+                        if (resource.size() != Resource.UNKNOWN_SIZE && resource.size() != fileDataSize) {
+                            throw new IOException("Resource %#018x was expected to be %d bytes long, but was %d bytes long".formatted(resource.hash(), resource.size(), fileDataSize));
+                        }
+
                         files.add(new PackfileBase.FileEntry(
                             files.size(),
                             options.encrypt() ? random.nextInt() : 0,
                             resource.hash(),
                             new PackfileBase.Span(
                                 fileDataOffset,
-                                resource.size(),
+                                (int) fileDataSize,
                                 options.encrypt() ? random.nextInt() : 0
                             )
                         ));
 
-                        fileDataOffset += resource.size();
-                        skip &= resource.size() > 0;
+                        fileDataOffset += fileDataSize;
+                        skip &= fileDataSize > 0;
+                        fileDataSize = 0;
 
                         task.worked(1);
                     } else {
+                        fileDataSize += length;
                         skip = false;
+
+                        // Sizes of resources of known size are checked up front, but they still may turn out to be longer
+                        if (resource.size() != Resource.UNKNOWN_SIZE && fileDataSize > resource.size()) {
+                            throw new IOException("Resource %#018x was expected to be %d bytes long, but is longer".formatted(resource.hash(), resource.size()));
+                        }
+
+                        if (fileDataSize > Integer.MAX_VALUE) {
+                            throw new IOException(getTooBigMessage(resource));
+                        }
                     }
                 }
 
                 if (skip) {
+                    buffers.offer(decompressed);
                     continue;
                 }
 
-                decompressed.limit(decompressed.position());
-                decompressed.position(0);
-
-                final ByteBuffer compressed = compressor.compress(decompressed.slice(), options.compression());
+                decompressed.flip();
 
                 final PackfileBase.Span decompressedSpan = new PackfileBase.Span(
                     chunkDataDecompressedOffset,
@@ -159,24 +625,87 @@ public class PackfileWriter implements Closeable {
                     options.encrypt() ? random.nextInt() : 0
                 );
 
-                final PackfileBase.Span compressedSpan = new PackfileBase.Span(
-                    chunkDataCompressedOffset,
-                    compressed.remaining(),
-                    options.encrypt() ? random.nextInt() : 0
+                final ByteBuffer output = Objects.requireNonNullElseGet(
+                    outputs.poll(),
+                    () -> ByteBuffer.allocateDirect(Compressor.getCompressedSize(Compressor.BLOCK_SIZE_BYTES))
                 );
 
-                if (options.encrypt()) {
-                    PackfileBase.ChunkEntry.swizzle(compressed, decompressedSpan);
-                }
+                final Future<ByteBuffer> compressed = executor.submit(() -> {
+                    compressor.compress(decompressed.slice(), output.clear(), options.compression());
+                    output.flip();
+
+                    if (options.encrypt()) {
+                        PackfileBase.ChunkEntry.swizzle(output, decompressedSpan);
+                    }
+
+                    return output;
+                });
 
-                chunks.add(new PackfileBase.ChunkEntry(decompressedSpan, compressedSpan));
+                inflight.offer(new PendingChunk(decompressed, decompressedSpan, options.encrypt() ? random.nextInt() : 0, compressed));
                 chunkDataDecompressedOffset += decompressed.remaining();
-                chunkDataCompressedOffset += compressed.remaining();
 
-                channel.write(compressed);
+                while (inflight.size() >= options.blocksInFlight()) {
+                    chunkDataCompressedOffset += writeChunk(channel, inflight.remove(), chunkDataCompressedOffset, chunks, buffers, outputs);
+                }
+            }
+
+            while (!inflight.isEmpty()) {
+                chunkDataCompressedOffset += writeChunk(channel, inflight.remove(), chunkDataCompressedOffset, chunks, buffers, outputs);
+            }
+        } finally {
+            for (PendingChunk chunk : inflight) {
+                chunk.compressed().cancel(false);
             }
 
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Waits for the chunk to be compressed and writes it to the channel.
+     * <p>
+     * Buffers of the chunk are returned to {@code buffers} and {@code outputs} to be reused for the following chunks.
+     *
+     * @return size of the compressed data
+     */
+    private static int writeChunk(
+        @NotNull SeekableByteChannel channel,
+        @NotNull PendingChunk chunk,
+        long offset,
+        @NotNull Set<PackfileBase.ChunkEntry> chunks,
+        @NotNull Queue<ByteBuffer> buffers,
+        @NotNull Queue<ByteBuffer> outputs
+    ) throws IOException {
+        final ByteBuffer compressed;
+
+        try {
+            compressed = chunk.compressed().get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while compressing data");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException io) {
+                throw io;
+            }
+            throw new IOException("Error compressing data", e.getCause());
+        }
+
+        final PackfileBase.Span compressedSpan = new PackfileBase.Span(
+            offset,
+            compressed.remaining(),
+            chunk.key()
+        );
+
+        chunks.add(new PackfileBase.ChunkEntry(chunk.decompressedSpan(), compressedSpan));
+        buffers.offer(chunk.decompressed());
+
+        while (compressed.hasRemaining()) {
+            channel.write(compressed);
         }
+
+        outputs.offer(compressed);
+
+        return compressedSpan.size();
     }
 
     @Override
@@ -188,19 +717,84 @@ public class PackfileWriter implements Closeable {
         resources.clear();
     }
 
-    private int computeHeaderSize() {
+    /**
+     * Rejects resources whose size is known to exceed the maximum size of a file, before anything is written.
+     * Resources of unknown size are checked while they're being read.
+     */
+    private static void checkSizes(@NotNull Collection<Resource> resources) throws IOException {
+        for (Resource resource : resources) {
+            if (resource.size() > Integer.MAX_VALUE) {
+                throw new IOException(getTooBigMessage(resource));
+            }
+        }
+    }
+
+    @NotNull
+    private static String getTooBigMessage(@NotNull Resource resource) {
+        return "Resource %#018x is too big, the maximum supported size is %d bytes".formatted(resource.hash(), Integer.MAX_VALUE);
+    }
+
+    private static int computeHeaderSize(int filesCount, int chunksCount) {
         return PackfileBase.Header.BYTES
-            + PackfileBase.FileEntry.BYTES * resources.size()
-            + PackfileBase.ChunkEntry.BYTES * computeChunksCount();
+            + PackfileBase.FileEntry.BYTES * filesCount
+            + PackfileBase.ChunkEntry.BYTES * chunksCount;
     }
 
-    private int computeChunksCount() {
-        final long size = resources.stream()
-            .mapToLong(Resource::size)
-            .sum();
+    /**
+     * Estimates the number of chunks needed for the given resources.
+     * <p>
+     * The estimate is exact if sizes of all resources are known.
+     * Otherwise, each resource of unknown size is assumed to fit into a single chunk.
+     */
+    private static int computeChunksCount(@NotNull Collection<Resource> resources) {
+        long size = 0;
+        int unknown = 0;
+
+        for (Resource resource : resources) {
+            if (resource.size() == Resource.UNKNOWN_SIZE) {
+                unknown += 1;
+            } else {
+                size += resource.size();
+            }
+        }
+
+        return Math.max(1, Compressor.getBlocksCount(size) + unknown);
+    }
+
+    /**
+     * @param threads        number of threads used for compressing chunks
+     * @param blocksInFlight maximum number of blocks that are read, but not yet written. Bounds memory usage of the writer
+     */
+    public record Options(@NotNull Compressor.Level compression, boolean encrypt, int threads, int blocksInFlight) {
+        public Options {
+            if (threads <= 0) {
+                throw new IllegalArgumentException("Number of threads must be positive: " + threads);
+            }
+
+            if (blocksInFlight <= 0) {
+                throw new IllegalArgumentException("Number of blocks in flight must be positive: " + blocksInFlight);
+            }
+        }
+
+        public Options(@NotNull Compressor.Level compression, boolean encrypt) {
+            this(compression, encrypt, Runtime.getRuntime().availableProcessors(), Runtime.getRuntime().availableProcessors() * 2);
+        }
+    }
 
-        return Math.max(1, Compressor.getBlocksCount(size));
+    private static record Passthrough(
+        Packfile source,
+        @NotNull List<PackfileBase.ChunkEntry> chunks,
+        @NotNull List<PackfileBase.FileEntry> files,
+        @NotNull List<Resource> resources,
+        @NotNull Map<Long, Long> offsets
+    ) {
+        private static final Passthrough EMPTY = new Passthrough(null, List.of(), List.of(), List.of(), Map.of());
     }
 
-    public record Options(@NotNull Compressor.Level compression, boolean encrypt) {}
+    private static record PendingChunk(
+        @NotNull ByteBuffer decompressed,
+        @NotNull PackfileBase.Span decompressedSpan,
+        int key,
+        @NotNull Future<ByteBuffer> compressed
+    ) {}
 }
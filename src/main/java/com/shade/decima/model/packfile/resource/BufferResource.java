@@ -29,7 +29,7 @@ public class BufferResource implements Resource {
     }
 
     @Override
-    public int size() {
+    public long size() {
         return data.length;
     }
 
@@ -10,19 +10,12 @@ import java.nio.file.StandardOpenOption;
 
 public class FileResource implements Resource {
     private final FileChannel channel;
-    private final int size;
+    private final long size;
     private final long hash;
 
     public FileResource(@NotNull Path path, long hash) throws IOException {
         this.channel = FileChannel.open(path, StandardOpenOption.READ);
-
-        final long size = channel.size();
-
-        if (size > Integer.MAX_VALUE) {
-            throw new IllegalArgumentException("File is too big: " + size);
-        }
-
-        this.size = (int) size;
+        this.size = channel.size();
         this.hash = hash;
     }
 
@@ -37,7 +30,7 @@ public class FileResource implements Resource {
     }
 
     @Override
-    public int size() {
+    public long size() {
         return size;
     }
 
@@ -11,6 +11,11 @@ import java.nio.ByteBuffer;
 public class PackfileResource implements Resource {
     private static final int DEFAULT_BUFFER_SIZE = 8192;
 
+    /**
+     * Number of chunks decompressed ahead of the one being read, so decompression overlaps with compression of the output.
+     */
+    private static final int READ_AHEAD_CHUNKS = 2;
+
     private final Packfile packfile;
     private final PackfileBase.FileEntry entry;
     private final byte[] buffer;
@@ -26,7 +31,7 @@ public class PackfileResource implements Resource {
     @Override
     public long read(@NotNull ByteBuffer dst) throws IOException {
         if (stream == null) {
-            stream = packfile.newInputStream(entry.hash());
+            stream = packfile.newInputStream(entry.hash(), READ_AHEAD_CHUNKS);
         }
 
         final int length = Math.min(buffer.length, dst.remaining());
@@ -45,12 +50,15 @@ public class PackfileResource implements Resource {
     }
 
     @Override
-    public int size() {
+    public long size() {
         return entry.span().size();
     }
 
     @Override
-    public void close() {
-        stream = null;
+    public void close() throws IOException {
+        if (stream != null) {
+            stream.close();
+            stream = null;
+        }
     }
 }
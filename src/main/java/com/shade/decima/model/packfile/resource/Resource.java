@@ -7,9 +7,17 @@ import java.io.IOException;
 import java.nio.ByteBuffer;
 
 public interface Resource extends Closeable {
+    /**
+     * Size of a resource that is not known until the resource is read completely.
+     */
+    long UNKNOWN_SIZE = -1;
+
     long read(@NotNull ByteBuffer buffer) throws IOException;
 
     long hash();
 
-    int size();
+    /**
+     * Returns size of this resource in bytes, or {@link #UNKNOWN_SIZE} if it's not known in advance.
+     */
+    long size();
 }
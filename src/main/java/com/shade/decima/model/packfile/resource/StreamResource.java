@@ -0,0 +1,44 @@
+package com.shade.decima.model.packfile.resource;
+
+import com.shade.util.NotNull;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+
+/**
+ * A resource whose data is read from a stream, e.g. produced on the fly by an exporter.
+ * <p>
+ * Its size is not known until the stream is exhausted.
+ */
+public class StreamResource implements Resource {
+    private final ReadableByteChannel channel;
+    private final long hash;
+
+    public StreamResource(@NotNull InputStream stream, long hash) {
+        this.channel = Channels.newChannel(stream);
+        this.hash = hash;
+    }
+
+    @Override
+    public long read(@NotNull ByteBuffer buffer) throws IOException {
+        return channel.read(buffer);
+    }
+
+    @Override
+    public long hash() {
+        return hash;
+    }
+
+    @Override
+    public long size() {
+        return UNKNOWN_SIZE;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -52,13 +52,11 @@ public class RTTITypeDumper {
 
     @NotNull
     public long[] getTypeId(@NotNull RTTIType<?> type) {
-        final String string = getTypeString(type);
-
         if (cache.containsKey(type)) {
             return cache.get(type);
         }
 
-        final long[] hash = MurmurHash3.mmh3(string.getBytes());
+        final long[] hash = MurmurHash3.mmh3(getTypeString(type).getBytes());
         cache.put(type, hash);
         return hash;
     }
@@ -0,0 +1,69 @@
+package com.shade.decima.model.util;
+
+import com.shade.util.NotNull;
+
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A thread-safe pool of byte arrays that are reused instead of being allocated over and over again.
+ * <p>
+ * Arrays are grouped by their exact size. Each group holds up to {@code capacity} free arrays;
+ * arrays released to a full group are left for the garbage collector.
+ */
+public class BufferPool {
+    private final Map<Integer, Bucket> buckets = new ConcurrentHashMap<>();
+    private final int capacity;
+
+    public BufferPool(int capacity) {
+        this.capacity = capacity;
+    }
+
+    /**
+     * Returns an array of exactly {@code size} bytes. Its contents are undefined.
+     */
+    @NotNull
+    public byte[] acquire(int size) {
+        final byte[] buffer = getBucket(size).poll();
+        return buffer != null ? buffer : new byte[size];
+    }
+
+    /**
+     * Returns an array acquired using {@link #acquire(int)} back to the pool.
+     * The array must not be used by the caller afterwards.
+     */
+    public void release(@NotNull byte[] buffer) {
+        getBucket(buffer.length).offer(buffer);
+    }
+
+    @NotNull
+    private Bucket getBucket(int size) {
+        return buckets.computeIfAbsent(size, key -> new Bucket());
+    }
+
+    private class Bucket {
+        private final Queue<byte[]> buffers = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger size = new AtomicInteger();
+
+        private byte[] poll() {
+            final byte[] buffer = buffers.poll();
+
+            if (buffer != null) {
+                size.decrementAndGet();
+            }
+
+            return buffer;
+        }
+
+        private void offer(@NotNull byte[] buffer) {
+            if (size.incrementAndGet() <= capacity) {
+                buffers.offer(buffer);
+            } else {
+                size.decrementAndGet();
+            }
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package com.shade.decima.model.util;
+
+import com.shade.platform.model.util.IOUtils;
+import com.shade.util.NotNull;
+import com.shade.util.Nullable;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.ServiceLoader;
+
+/**
+ * A codec used for compressing and decompressing chunks of packfiles.
+ * <p>
+ * Codecs are created by {@link CodecProvider}s that are discovered using {@link ServiceLoader}.
+ * <p>
+ * Implementations must never produce more than {@link Compressor#getCompressedSize(int)} bytes of
+ * compressed data, as callers allocate their buffers based on it.
+ */
+public interface Codec extends Closeable {
+    /**
+     * Compresses contents of {@code src} into {@code dst}.
+     *
+     * @return size of the compressed data
+     */
+    int compress(@NotNull byte[] src, @NotNull byte[] dst, @NotNull Level level) throws IOException;
+
+    /**
+     * Decompresses first {@code srcLen} bytes of {@code src} into first {@code dstLen} bytes of {@code dst}.
+     *
+     * @throws IOException if the data can't be decompressed into exactly {@code dstLen} bytes
+     */
+    void decompress(@NotNull byte[] src, int srcLen, @NotNull byte[] dst, int dstLen) throws IOException;
+
+    /**
+     * Compresses remaining bytes of {@code input} into a new buffer.
+     */
+    @NotNull
+    default ByteBuffer compress(@NotNull ByteBuffer input, @NotNull Level level) throws IOException {
+        final ByteBuffer output = ByteBuffer.allocate(Compressor.getCompressedSize(input.remaining()));
+        compress(input, output, level);
+        return output.flip();
+    }
+
+    /**
+     * Compresses remaining bytes of {@code src} into {@code dst}, advancing positions of both buffers.
+     * <p>
+     * Allows callers to reuse the output buffer between calls.
+     *
+     * @return size of the compressed data
+     * @throws IllegalArgumentException if {@code dst} has less than {@link Compressor#getCompressedSize(int)} bytes remaining
+     */
+    default int compress(@NotNull ByteBuffer src, @NotNull ByteBuffer dst, @NotNull Level level) throws IOException {
+        if (dst.remaining() < Compressor.getCompressedSize(src.remaining())) {
+            throw new IllegalArgumentException("Destination buffer is too small: " + dst.remaining());
+        }
+
+        final byte[] input = IOUtils.getBytesExact(src, src.remaining());
+        final byte[] output = new byte[Compressor.getCompressedSize(input.length)];
+        final int length = compress(input, output, level);
+
+        dst.put(output, 0, length);
+
+        return length;
+    }
+
+    default void decompress(@NotNull byte[] src, @NotNull byte[] dst) throws IOException {
+        decompress(src, src.length, dst, dst.length);
+    }
+
+    /**
+     * Decompresses remaining bytes of {@code src} into {@code dst}.
+     */
+    default void decompress(@NotNull ByteBuffer src, @NotNull byte[] dst, int dstLen) throws IOException {
+        final int srcLen = src.remaining();
+        decompress(IOUtils.getBytesExact(src.slice(), srcLen), srcLen, dst, dstLen);
+    }
+
+    @Override
+    void close();
+
+    /**
+     * Creates a codec using the first provider whose name matches {@code name}.
+     *
+     * @param path path to a library required by the codec, if any
+     */
+    @NotNull
+    static Codec create(@NotNull String name, @Nullable Path path) {
+        for (CodecProvider provider : ServiceLoader.load(CodecProvider.class)) {
+            if (provider.getName().equals(name)) {
+                return provider.create(path);
+            }
+        }
+
+        throw new IllegalArgumentException("Can't find codec '" + name + "'");
+    }
+
+    public enum Level {
+        // @formatter:off
+        /** Don't compress, just copy raw bytes */
+        NONE(0),
+        /** Super fast mode, lower compression ratio */
+        SUPER_FAST(1),
+        /** Fastest LZ mode with still decent compression ratio */
+        VERY_FAST(2),
+        /** Fast - good for daily use */
+        FAST(3),
+        /** Standard medium speed LZ mode */
+        NORMAL(4),
+        /** Optimal parse level 1 (faster optimal encoder) */
+        OPTIMAL_1(5),
+        /** Optimal parse level 2 (recommended baseline optimal encoder) */
+        OPTIMAL_2(6),
+        /** Optimal parse level 3 (slower optimal encoder) */
+        OPTIMAL_3(7),
+        /** Optimal parse level 4 (very slow optimal encoder) */
+        OPTIMAL_4(8),
+        /** Optimal parse level 5 (don't care about encode speed, maximum compression) */
+        OPTIMAL_5(9),
+        /** Faster than {@link Level#SUPER_FAST}, less compression */
+        HYPER_FAST_1(-1),
+        /** Faster than {@link Level#HYPER_FAST_1}, less compression */
+        HYPER_FAST_2(-2),
+        /** Faster than {@link Level#HYPER_FAST_2}, less compression */
+        HYPER_FAST_3(-3),
+        /** Fastest, less compression */
+        HYPER_FAST_4(-4);
+        // @formatter:on
+
+        private final int value;
+
+        Level(int value) {
+            this.value = value;
+        }
+
+        public int getValue() {
+            return value;
+        }
+    }
+}
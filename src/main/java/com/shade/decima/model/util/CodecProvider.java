@@ -0,0 +1,19 @@
+package com.shade.decima.model.util;
+
+import com.shade.util.NotNull;
+import com.shade.util.Nullable;
+
+import java.nio.file.Path;
+
+public interface CodecProvider {
+    @NotNull
+    String getName();
+
+    /**
+     * Creates a new codec.
+     *
+     * @param path path to a library required by the codec. Codecs that don't need any library may ignore it
+     */
+    @NotNull
+    Codec create(@Nullable Path path);
+}
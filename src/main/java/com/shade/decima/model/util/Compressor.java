@@ -1,19 +1,23 @@
 package com.shade.decima.model.util;
 
-import com.shade.platform.model.util.IOUtils;
 import com.shade.util.NotNull;
+import com.shade.util.Nullable;
 import com.sun.jna.InvocationMapper;
 import com.sun.jna.Library;
 import com.sun.jna.Native;
+import com.sun.jna.Pointer;
 
-import java.io.Closeable;
 import java.io.IOException;
+import java.nio.Buffer;
 import java.nio.ByteBuffer;
 import java.nio.file.Path;
 import java.util.Map;
 import java.util.Objects;
 
-public class Compressor implements Closeable {
+/**
+ * A codec backed by the native Oodle library that is shipped with the game.
+ */
+public class Compressor implements Codec {
     public static final int BLOCK_SIZE_BYTES = 0x40000;
 
     @SuppressWarnings("SuspiciousInvocationHandlerImplementation")
@@ -32,35 +36,96 @@ public class Compressor implements Closeable {
     private final OodleLibrary library;
     private final Path path;
 
+    public static class Provider implements CodecProvider {
+        public static final String NAME = "oodle";
+
+        @NotNull
+        @Override
+        public String getName() {
+            return NAME;
+        }
+
+        @NotNull
+        @Override
+        public Codec create(@Nullable Path path) {
+            if (path == null) {
+                throw new IllegalArgumentException("Path to the Oodle library is required");
+            }
+
+            return new Compressor(path);
+        }
+    }
+
     public Compressor(@NotNull Path path) {
         this.library = Native.load(path.toString(), OodleLibrary.class, LIBRARY_OPTIONS);
         this.path = path;
     }
 
-    @NotNull
-    public ByteBuffer compress(@NotNull ByteBuffer input, @NotNull Level level) throws IOException {
-        final byte[] src = IOUtils.getBytesExact(input, input.remaining());
-        final byte[] dst = new byte[getCompressedSize(src.length)];
-        final int length = compress(src, dst, level);
-
-        return ByteBuffer.wrap(dst, 0, length);
-    }
-
+    @Override
     public int compress(@NotNull byte[] src, @NotNull byte[] dst, @NotNull Level level) throws IOException {
         if (src.length == 0) {
             return 0;
         }
-        final int size = library.OodleLZ_Compress(8, src, src.length, dst, level.value, 0, 0, 0, 0, 0);
+        final int size = library.OodleLZ_Compress(8, src, src.length, dst, level.getValue(), 0, 0, 0, 0, 0);
         if (size == 0) {
             throw new IOException("Error compressing data");
         }
         return size;
     }
 
-    public void decompress(@NotNull byte[] src, @NotNull byte[] dst) throws IOException {
-        decompress(src, src.length, dst, dst.length);
+    /**
+     * Compresses remaining bytes of {@code src} into {@code dst}.
+     * <p>
+     * If both buffers are direct, they are passed to the native library without copying. Positions of both buffers are advanced.
+     *
+     * @return size of the compressed data
+     */
+    @Override
+    public int compress(@NotNull ByteBuffer src, @NotNull ByteBuffer dst, @NotNull Level level) throws IOException {
+        if (!src.isDirect() || !dst.isDirect()) {
+            return Codec.super.compress(src, dst, level);
+        }
+
+        if (dst.remaining() < getCompressedSize(src.remaining())) {
+            throw new IllegalArgumentException("Destination buffer is too small: " + dst.remaining());
+        }
+
+        if (!src.hasRemaining()) {
+            return 0;
+        }
+
+        // JNA ignores position of direct buffers, so we need to slice them
+        final int size = library.OodleLZ_Compress(8, src.slice(), src.remaining(), dst.slice(), level.getValue(), 0, 0, 0, 0, 0);
+
+        if (size == 0) {
+            throw new IOException("Error compressing data");
+        }
+
+        src.position(src.limit());
+        dst.position(dst.position() + size);
+
+        return size;
     }
 
+    /**
+     * Compresses {@code srcLen} bytes of native memory pointed by {@code src} into native memory pointed by {@code dst}.
+     * <p>
+     * The caller is responsible for {@code dst} being at least {@link #getCompressedSize(int)} bytes long.
+     *
+     * @return size of the compressed data
+     */
+    public int compress(@NotNull Pointer src, int srcLen, @NotNull Pointer dst, @NotNull Level level) throws IOException {
+        if (srcLen == 0) {
+            return 0;
+        }
+        final int size = library.OodleLZ_Compress(8, src, srcLen, dst, level.getValue(), 0, 0, 0, 0, 0);
+        if (size == 0) {
+            throw new IOException("Error compressing data");
+        }
+        return size;
+    }
+
+    @Override
     public void decompress(@NotNull byte[] src, int srcLen, @NotNull byte[] dst, int dstLen) throws IOException {
         Objects.checkFromIndexSize(0, srcLen, src.length);
         Objects.checkFromIndexSize(0, dstLen, dst.length);
@@ -76,6 +141,71 @@ public class Compressor implements Closeable {
         }
     }
 
+    /**
+     * Decompresses remaining bytes of {@code src} into {@code dst}.
+     * <p>
+     * If {@code src} is direct, its contents are handed to the native library as is, without copying.
+     */
+    @Override
+    public void decompress(@NotNull ByteBuffer src, @NotNull byte[] dst, int dstLen) throws IOException {
+        if (!src.isDirect()) {
+            Codec.super.decompress(src, dst, dstLen);
+            return;
+        }
+
+        Objects.checkFromIndexSize(0, dstLen, dst.length);
+
+        if (!src.hasRemaining()) {
+            return;
+        }
+
+        // JNA ignores position of direct buffers, so we need to slice it
+        final int size = library.OodleLZ_Decompress(src.slice(), src.remaining(), dst, dstLen, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0);
+
+        if (size != dstLen) {
+            throw new IOException("Error decompressing data");
+        }
+    }
+
+    /**
+     * Decompresses remaining bytes of direct buffer {@code src} into remaining bytes of direct buffer {@code dst}.
+     * <p>
+     * Both buffers are passed to the native library without copying. Positions of both buffers are advanced.
+     */
+    public void decompress(@NotNull ByteBuffer src, @NotNull ByteBuffer dst) throws IOException {
+        checkDirect(src);
+        checkDirect(dst);
+
+        if (!src.hasRemaining()) {
+            return;
+        }
+
+        final int dstLen = dst.remaining();
+        final int size = library.OodleLZ_Decompress(src.slice(), src.remaining(), dst.slice(), dstLen, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0);
+
+        if (size != dstLen) {
+            throw new IOException("Error decompressing data");
+        }
+
+        src.position(src.limit());
+        dst.position(dst.limit());
+    }
+
+    /**
+     * Decompresses {@code srcLen} bytes of native memory pointed by {@code src} into {@code dstLen} bytes of native memory pointed by {@code dst}.
+     */
+    public void decompress(@NotNull Pointer src, int srcLen, @NotNull Pointer dst, int dstLen) throws IOException {
+        if (srcLen == 0) {
+            return;
+        }
+
+        final int size = library.OodleLZ_Decompress(src, srcLen, dst, dstLen, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0);
+
+        if (size != dstLen) {
+            throw new IOException("Error decompressing data");
+        }
+    }
+
     public int getVersion() {
         final int[] buffer = new int[7];
         library.Oodle_GetConfigValues(buffer);
@@ -88,6 +218,12 @@ public class Compressor implements Closeable {
         return String.format("%d.%d.%d", (version & 0xff) - (version >>> 24), version >>> 16 & 0xff, version >>> 8 & 0xff);
     }
 
+    private static void checkDirect(@NotNull ByteBuffer buffer) {
+        if (!buffer.isDirect()) {
+            throw new IllegalArgumentException("Buffer must be direct");
+        }
+    }
+
     public static int getCompressedSize(int size) {
         return size + 274 * getBlocksCount(size);
     }
@@ -106,50 +242,21 @@ public class Compressor implements Closeable {
         return "Compressor{path=" + path + ", version=" + getVersionString() + '}';
     }
 
-    public enum Level {
-        // @formatter:off
-        /** Don't compress, just copy raw bytes */
-        NONE(0),
-        /** Super fast mode, lower compression ratio */
-        SUPER_FAST(1),
-        /** Fastest LZ mode with still decent compression ratio */
-        VERY_FAST(2),
-        /** Fast - good for daily use */
-        FAST(3),
-        /** Standard medium speed LZ mode */
-        NORMAL(4),
-        /** Optimal parse level 1 (faster optimal encoder) */
-        OPTIMAL_1(5),
-        /** Optimal parse level 2 (recommended baseline optimal encoder) */
-        OPTIMAL_2(6),
-        /** Optimal parse level 3 (slower optimal encoder) */
-        OPTIMAL_3(7),
-        /** Optimal parse level 4 (very slow optimal encoder) */
-        OPTIMAL_4(8),
-        /** Optimal parse level 5 (don't care about encode speed, maximum compression) */
-        OPTIMAL_5(9),
-        /** Faster than {@link Level#SUPER_FAST}, less compression */
-        HYPER_FAST_1(-1),
-        /** Faster than {@link Level#HYPER_FAST_1}, less compression */
-        HYPER_FAST_2(-2),
-        /** Faster than {@link Level#HYPER_FAST_2}, less compression */
-        HYPER_FAST_3(-3),
-        /** Fastest, less compression */
-        HYPER_FAST_4(-4);
-        // @formatter:on
-
-        private final int value;
-
-        Level(int value) {
-            this.value = value;
-        }
-    }
-
     private interface OodleLibrary extends Library {
         int OodleLZ_Compress(int compressor, byte[] rawBuf, long rawLen, byte[] compBuf, int level, long pOptions, long dictionaryBase, long lrm, long scratchMem, long scratchSize);
 
+        int OodleLZ_Compress(int compressor, Buffer rawBuf, long rawLen, Buffer compBuf, int level, long pOptions, long dictionaryBase, long lrm, long scratchMem, long scratchSize);
+
+        int OodleLZ_Compress(int compressor, Pointer rawBuf, long rawLen, Pointer compBuf, int level, long pOptions, long dictionaryBase, long lrm, long scratchMem, long scratchSize);
+
         int OodleLZ_Decompress(byte[] compBuf, long compBufSize, byte[] rawBuf, long rawLen, int fuzzSafe, int checkCRC, int verbosity, long decBufBase, long decBufSize, long fpCallback, long callbackUserData, long decoderMemory, long decoderMemorySize, int threadPhase);
 
+        int OodleLZ_Decompress(Buffer compBuf, long compBufSize, byte[] rawBuf, long rawLen, int fuzzSafe, int checkCRC, int verbosity, long decBufBase, long decBufSize, long fpCallback, long callbackUserData, long decoderMemory, long decoderMemorySize, int threadPhase);
+
+        int OodleLZ_Decompress(Buffer compBuf, long compBufSize, Buffer rawBuf, long rawLen, int fuzzSafe, int checkCRC, int verbosity, long decBufBase, long decBufSize, long fpCallback, long callbackUserData, long decoderMemory, long decoderMemorySize, int threadPhase);
+
+        int OodleLZ_Decompress(Pointer compBuf, long compBufSize, Pointer rawBuf, long rawLen, int fuzzSafe, int checkCRC, int verbosity, long decBufBase, long decBufSize, long fpCallback, long callbackUserData, long decoderMemory, long decoderMemorySize, int threadPhase);
+
         void Oodle_GetConfigValues(int[] buffer);
 
         void dispose();
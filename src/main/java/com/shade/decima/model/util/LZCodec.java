@@ -0,0 +1,284 @@
+package com.shade.decima.model.util;
+
+import com.shade.util.NotNull;
+import com.shade.util.Nullable;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Objects;
+
+/**
+ * A pure-Java codec that doesn't require any native libraries.
+ * <p>
+ * Its output is <b>not</b> compatible with Oodle, so archives written with it can't be read by the game.
+ * It's useful for round-tripping and measuring packfiles on machines where the game is not installed.
+ * <p>
+ * Each compressed block starts with a method byte, followed by either raw data ({@link #METHOD_STORE})
+ * or a sequence of LZ4-style tokens ({@link #METHOD_LZ}). Data is always stored if compression doesn't
+ * make it smaller, so compressed size never exceeds the input size by more than one byte.
+ */
+public class LZCodec implements Codec {
+    public static class Provider implements CodecProvider {
+        public static final String NAME = "lz";
+
+        @NotNull
+        @Override
+        public String getName() {
+            return NAME;
+        }
+
+        @NotNull
+        @Override
+        public Codec create(@Nullable Path path) {
+            return new LZCodec();
+        }
+    }
+
+    private static final int METHOD_STORE = 0;
+    private static final int METHOD_LZ = 1;
+
+    private static final int HASH_LOG = 16;
+    private static final int MIN_MATCH = 4;
+    private static final int MAX_OFFSET = 0xffff;
+
+    /**
+     * Matches must not start within the last bytes of the input, so the last token always contains literals only.
+     */
+    private static final int MATCH_FIND_LIMIT = 12;
+    private static final int LAST_LITERALS = 5;
+
+    @Override
+    public int compress(@NotNull byte[] src, @NotNull byte[] dst, @NotNull Level level) throws IOException {
+        if (src.length == 0) {
+            return 0;
+        }
+
+        if (dst.length < src.length + 1) {
+            throw new IOException("Destination buffer is too small: " + dst.length);
+        }
+
+        if (level != Level.NONE) {
+            final int length = compressLZ(src, dst);
+
+            if (length > 0) {
+                return length;
+            }
+        }
+
+        dst[0] = METHOD_STORE;
+        System.arraycopy(src, 0, dst, 1, src.length);
+
+        return src.length + 1;
+    }
+
+    @Override
+    public void decompress(@NotNull byte[] src, int srcLen, @NotNull byte[] dst, int dstLen) throws IOException {
+        Objects.checkFromIndexSize(0, srcLen, src.length);
+        Objects.checkFromIndexSize(0, dstLen, dst.length);
+
+        if (srcLen == 0) {
+            return;
+        }
+
+        switch (src[0]) {
+            case METHOD_STORE -> {
+                if (srcLen - 1 != dstLen) {
+                    throw new IOException("Error decompressing data");
+                }
+                System.arraycopy(src, 1, dst, 0, dstLen);
+            }
+            case METHOD_LZ -> decompressLZ(src, srcLen, dst, dstLen);
+            default -> throw new IOException("Unsupported compression method: " + src[0]);
+        }
+    }
+
+    @Override
+    public void close() {
+        // nothing to close
+    }
+
+    @Override
+    public String toString() {
+        return "LZCodec";
+    }
+
+    /**
+     * @return size of the compressed data, or {@code -1} if it's not smaller than the input
+     */
+    private static int compressLZ(@NotNull byte[] src, @NotNull byte[] dst) {
+        final int[] table = new int[1 << HASH_LOG];
+        final int limit = src.length - MATCH_FIND_LIMIT;
+        final int max = src.length;
+
+        int dp = 0;
+        int sp = 0;
+        int anchor = 0;
+
+        dst[dp++] = METHOD_LZ;
+
+        while (sp < limit) {
+            final int sequence = getInt(src, sp);
+            final int hash = sequence * 0x9E3779B1 >>> 32 - HASH_LOG;
+            final int ref = table[hash] - 1;
+
+            table[hash] = sp + 1;
+
+            if (ref < 0 || sp - ref > MAX_OFFSET || getInt(src, ref) != sequence) {
+                sp += 1;
+                continue;
+            }
+
+            int length = MIN_MATCH;
+
+            while (sp + length < src.length - LAST_LITERALS && src[ref + length] == src[sp + length]) {
+                length += 1;
+            }
+
+            final int token = dp;
+
+            dp = putLiterals(src, anchor, sp - anchor, dst, dp, max);
+
+            if (dp < 0 || dp + 2 > max) {
+                return -1;
+            }
+
+            dst[dp++] = (byte) (sp - ref);
+            dst[dp++] = (byte) (sp - ref >>> 8);
+            dst[token] |= (byte) Math.min(length - MIN_MATCH, 15);
+            dp = putLength(dst, dp, max, length - MIN_MATCH);
+
+            if (dp < 0) {
+                return -1;
+            }
+
+            sp += length;
+            anchor = sp;
+        }
+
+        return putLiterals(src, anchor, src.length - anchor, dst, dp, max);
+    }
+
+    /**
+     * Writes a token followed by literals. The lower half of the token is left for the match length.
+     *
+     * @return new position in {@code dst}, or {@code -1} if {@code max} was reached
+     */
+    private static int putLiterals(@NotNull byte[] src, int offset, int length, @NotNull byte[] dst, int dp, int max) {
+        if (dp >= max) {
+            return -1;
+        }
+
+        dst[dp++] = (byte) (Math.min(length, 15) << 4);
+        dp = putLength(dst, dp, max, length);
+
+        if (dp < 0 || dp + length > max) {
+            return -1;
+        }
+
+        System.arraycopy(src, offset, dst, dp, length);
+
+        return dp + length;
+    }
+
+    /**
+     * Writes the part of a length that doesn't fit into a token.
+     *
+     * @return new position in {@code dst}, or {@code -1} if {@code max} was reached
+     */
+    private static int putLength(@NotNull byte[] dst, int dp, int max, int length) {
+        if (length < 15) {
+            return dp;
+        }
+
+        for (length -= 15; ; length -= 255) {
+            if (dp >= max) {
+                return -1;
+            }
+
+            if (length < 255) {
+                dst[dp++] = (byte) length;
+                return dp;
+            }
+
+            dst[dp++] = (byte) 255;
+        }
+    }
+
+    private static void decompressLZ(@NotNull byte[] src, int srcLen, @NotNull byte[] dst, int dstLen) throws IOException {
+        int sp = 1;
+        int dp = 0;
+
+        while (sp < srcLen) {
+            final int token = src[sp++] & 0xff;
+
+            int literals = token >>> 4;
+
+            if (literals == 15) {
+                int value;
+
+                do {
+                    if (sp >= srcLen) {
+                        throw new IOException("Error decompressing data");
+                    }
+
+                    value = src[sp++] & 0xff;
+                    literals += value;
+                } while (value == 255);
+            }
+
+            if (literals > srcLen - sp || literals > dstLen - dp) {
+                throw new IOException("Error decompressing data");
+            }
+
+            System.arraycopy(src, sp, dst, dp, literals);
+            sp += literals;
+            dp += literals;
+
+            if (sp == srcLen) {
+                break;
+            }
+
+            if (sp + 2 > srcLen) {
+                throw new IOException("Error decompressing data");
+            }
+
+            final int offset = src[sp++] & 0xff | (src[sp++] & 0xff) << 8;
+
+            int length = token & 15;
+
+            if (length == 15) {
+                int value;
+
+                do {
+                    if (sp >= srcLen) {
+                        throw new IOException("Error decompressing data");
+                    }
+
+                    value = src[sp++] & 0xff;
+                    length += value;
+                } while (value == 255);
+            }
+
+            length += MIN_MATCH;
+
+            if (offset == 0 || offset > dp || length > dstLen - dp) {
+                throw new IOException("Error decompressing data");
+            }
+
+            // Matches may overlap with the data being written, so copy byte by byte
+            for (int i = 0; i < length; i++) {
+                dst[dp + i] = dst[dp - offset + i];
+            }
+
+            dp += length;
+        }
+
+        if (dp != dstLen) {
+            throw new IOException("Error decompressing data");
+        }
+    }
+
+    private static int getInt(@NotNull byte[] src, int index) {
+        return src[index] & 0xff | (src[index + 1] & 0xff) << 8 | (src[index + 2] & 0xff) << 16 | (src[index + 3] & 0xff) << 24;
+    }
+}
@@ -2,12 +2,26 @@ package com.shade.decima.model.util.hash;
 
 import com.shade.util.NotNull;
 
+import java.nio.ByteBuffer;
+import java.util.Objects;
 import java.util.zip.Checksum;
 
 /**
- * A re-implementation of {@link java.util.zip.CRC32C} but with {@code 0} as a default seed.
+ * A variant of {@link java.util.zip.CRC32C} but with {@code 0} as a default seed and without the final inversion.
+ * <p>
+ * The computation is delegated to {@link java.util.zip.CRC32C}, which is intrinsified by the JVM
+ * on platforms that have dedicated instructions. Its register is initialized with {@code 0xFFFFFFFF}
+ * and is inverted on output; feeding it four {@code 0xFF} bytes brings the register to {@code 0},
+ * and inverting its output once again yields the register itself.
  */
 public class CRC32C implements Checksum {
+    private static final byte[] SEED = {(byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF};
+
+    /**
+     * Inputs shorter than this are processed one byte at a time using a lookup table,
+     * since setting up {@link java.util.zip.CRC32C} costs more than processing them.
+     */
+    private static final int SHORT_INPUT_LENGTH = 16;
     private static final int[] LOOKUP = new int[256];
 
     static {
@@ -22,39 +36,57 @@ public class CRC32C implements Checksum {
         }
     }
 
-    private int crc = 0;
+    private final java.util.zip.CRC32C crc = new java.util.zip.CRC32C();
+
+    public CRC32C() {
+        reset();
+    }
 
     public static int calculate(@NotNull byte[] data) {
+        return calculate(data, 0, data.length);
+    }
+
+    public static int calculate(@NotNull byte[] data, int off, int len) {
+        Objects.checkFromIndexSize(off, len, data.length);
+
+        if (len < SHORT_INPUT_LENGTH) {
+            int crc = 0;
+
+            for (int i = off; i < off + len; i++) {
+                crc = LOOKUP[(crc ^ data[i]) & 0xff] ^ (crc >>> 8);
+            }
+
+            return crc & ~0x80000000;
+        }
+
         final CRC32C crc = new CRC32C();
-        crc.update(data);
+        crc.update(data, off, len);
         return (int) crc.getValue();
     }
 
     @Override
     public void update(int b) {
-        crc = LOOKUP[(crc ^ b) & 0xff] ^ (crc >>> 8);
+        crc.update(b);
     }
 
     @Override
     public void update(byte[] b, int off, int len) {
-        if (b == null) {
-            throw new NullPointerException();
-        }
-        if (off < 0 || len < 0 || off > b.length - len) {
-            throw new ArrayIndexOutOfBoundsException();
-        }
-        for (int i = off; i < off + len; i++) {
-            update(b[i]);
-        }
+        crc.update(b, off, len);
+    }
+
+    @Override
+    public void update(ByteBuffer buffer) {
+        crc.update(buffer);
     }
 
     @Override
     public long getValue() {
-        return crc & ~0x80000000;
+        return ~(int) crc.getValue() & ~0x80000000;
     }
 
     @Override
     public void reset() {
-        crc = 0;
+        crc.reset();
+        crc.update(SEED, 0, SEED.length);
     }
 }
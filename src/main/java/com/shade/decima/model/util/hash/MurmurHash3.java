@@ -2,6 +2,11 @@ package com.shade.decima.model.util.hash;
 
 import com.shade.platform.model.util.IOUtils;
 import com.shade.util.NotNull;
+import com.shade.util.Nullable;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Objects;
 
 /**
  * MurmurHash3 was written by Austin Appleby, and is placed in the public domain.
@@ -20,6 +25,8 @@ public class MurmurHash3 {
     private static final int N1 = 0x52dce729;
     private static final int N2 = 0x38495ab5;
 
+    private static final long SEED = 0x2A; // A seed used by Decima
+
     @NotNull
     public static long[] mmh3(@NotNull byte[] data) {
         return mmh3(data, 0, data.length);
@@ -27,19 +34,67 @@ public class MurmurHash3 {
 
     @NotNull
     public static long[] mmh3(@NotNull byte[] data, int offset, int length) {
-        return mmh3(data, offset, length, 0x2A /* A seed used by Decima */);
+        return mmh3(data, offset, length, SEED);
     }
 
     @NotNull
     public static long[] mmh3(@NotNull byte[] data, int offset, int length, long seed) {
+        final long[] hash = new long[2];
+        mmh3(data, null, offset, length, false, seed, hash, 0);
+        return hash;
+    }
+
+    /**
+     * Computes a 128-bit hash of the given range and stores both halves into {@code hash} starting at {@code hashOffset}.
+     */
+    public static void mmh3(@NotNull byte[] data, int offset, int length, @NotNull long[] hash, int hashOffset) {
+        mmh3(data, null, offset, length, false, SEED, hash, hashOffset);
+    }
+
+    /**
+     * Computes lower 64 bits of a hash of the given range.
+     *
+     * @param terminated whether the range should be hashed as if it was followed by a single {@code NUL} byte
+     */
+    public static long mmh3Low(@NotNull byte[] data, int offset, int length, boolean terminated) {
+        return mmh3(data, null, offset, length, terminated, SEED, null, 0);
+    }
+
+    /**
+     * Computes lower 64 bits of a hash of the given range of a buffer. The position of the buffer is not changed.
+     *
+     * @param terminated whether the range should be hashed as if it was followed by a single {@code NUL} byte
+     */
+    public static long mmh3Low(@NotNull ByteBuffer buffer, int offset, int length, boolean terminated) {
+        return mmh3(null, buffer, offset, length, terminated, SEED, null, 0);
+    }
+
+    /**
+     * Reads data either from {@code array} or {@code buffer}, whichever is present.
+     *
+     * @return lower 64 bits of the hash; if {@code hash} is not {@code null}, both halves are also stored into it
+     */
+    private static long mmh3(
+        @Nullable byte[] array,
+        @Nullable ByteBuffer buffer,
+        int offset,
+        int length,
+        boolean terminated,
+        long seed,
+        @Nullable long[] hash,
+        int hashOffset
+    ) {
+        Objects.checkFromIndexSize(offset, length, array != null ? array.length : buffer.limit());
+
+        final int total = terminated ? length + 1 : length;
+        final int blocks = total >> 4;
         long h1 = seed;
         long h2 = seed;
-        final int blocks = length >> 4;
 
         for (int i = 0; i < blocks; i++) {
-            final int index = offset + (i << 4);
-            long k1 = IOUtils.toLong(data, index);
-            long k2 = IOUtils.toLong(data, index + 8);
+            final int index = i << 4;
+            long k1 = getLong(array, buffer, offset, length, index);
+            long k2 = getLong(array, buffer, offset, length, index + 8);
 
             // mix functions for k1
             k1 *= C1;
@@ -60,69 +115,29 @@ public class MurmurHash3 {
             h2 = h2 * M + N2;
         }
 
-        // tail
-        long k1 = 0;
-        long k2 = 0;
-        final int index = offset + (blocks << 4);
-        switch (offset + length - index) {
-            case 15:
-                k2 ^= ((long) data[index + 14] & 0xff) << 48;
-                /* fall-through */
-            case 14:
-                k2 ^= ((long) data[index + 13] & 0xff) << 40;
-                /* fall-through */
-            case 13:
-                k2 ^= ((long) data[index + 12] & 0xff) << 32;
-                /* fall-through */
-            case 12:
-                k2 ^= ((long) data[index + 11] & 0xff) << 24;
-                /* fall-through */
-            case 11:
-                k2 ^= ((long) data[index + 10] & 0xff) << 16;
-                /* fall-through */
-            case 10:
-                k2 ^= ((long) data[index + 9] & 0xff) << 8;
-                /* fall-through */
-            case 9:
-                k2 ^= data[index + 8] & 0xff;
-                k2 *= C2;
-                k2 = Long.rotateLeft(k2, R3);
-                k2 *= C1;
-                h2 ^= k2;
-                /* fall-through */
-            case 8:
-                k1 ^= ((long) data[index + 7] & 0xff) << 56;
-                /* fall-through */
-            case 7:
-                k1 ^= ((long) data[index + 6] & 0xff) << 48;
-                /* fall-through */
-            case 6:
-                k1 ^= ((long) data[index + 5] & 0xff) << 40;
-                /* fall-through */
-            case 5:
-                k1 ^= ((long) data[index + 4] & 0xff) << 32;
-                /* fall-through */
-            case 4:
-                k1 ^= ((long) data[index + 3] & 0xff) << 24;
-                /* fall-through */
-            case 3:
-                k1 ^= ((long) data[index + 2] & 0xff) << 16;
-                /* fall-through */
-            case 2:
-                k1 ^= ((long) data[index + 1] & 0xff) << 8;
-                /* fall-through */
-            case 1:
-                k1 ^= data[index] & 0xff;
-                k1 *= C1;
-                k1 = Long.rotateLeft(k1, R1);
-                k1 *= C2;
-                h1 ^= k1;
-                break;
+        // tail; bytes past the range read as zeroes, so the terminator only contributes to the length
+        final int index = blocks << 4;
+        final int tail = total - index;
+
+        if (tail > 8) {
+            long k2 = getLong(array, buffer, offset, length, index + 8);
+            k2 *= C2;
+            k2 = Long.rotateLeft(k2, R3);
+            k2 *= C1;
+            h2 ^= k2;
+        }
+
+        if (tail > 0) {
+            long k1 = getLong(array, buffer, offset, length, index);
+            k1 *= C1;
+            k1 = Long.rotateLeft(k1, R1);
+            k1 *= C2;
+            h1 ^= k1;
         }
 
         // finalization
-        h1 ^= length;
-        h2 ^= length;
+        h1 ^= total;
+        h2 ^= total;
 
         h1 += h2;
         h2 += h1;
@@ -133,7 +148,38 @@ public class MurmurHash3 {
         h1 += h2;
         h2 += h1;
 
-        return new long[]{h1, h2};
+        if (hash != null) {
+            hash[hashOffset] = h1;
+            hash[hashOffset + 1] = h2;
+        }
+
+        return h1;
+    }
+
+    /**
+     * Reads a little-endian long at {@code index} of the range, treating bytes past its {@code length} as zeroes.
+     */
+    private static long getLong(@Nullable byte[] array, @Nullable ByteBuffer buffer, int offset, int length, int index) {
+        if (index + Long.BYTES <= length) {
+            if (array != null) {
+                return IOUtils.toLong(array, offset + index);
+            } else {
+                final long value = buffer.getLong(offset + index);
+                return buffer.order() == ByteOrder.LITTLE_ENDIAN ? value : Long.reverseBytes(value);
+            }
+        }
+
+        long value = 0;
+
+        for (int i = Math.min(Long.BYTES, length - index) - 1; i >= 0; i--) {
+            value = value << 8 | getByte(array, buffer, offset + index + i) & 0xff;
+        }
+
+        return value;
+    }
+
+    private static byte getByte(@Nullable byte[] array, @Nullable ByteBuffer buffer, int index) {
+        return array != null ? array[index] : buffer.get(index);
     }
 
     private static long fmix64(long hash) {
@@ -110,28 +110,29 @@ public class TextureViewer implements ValueViewer {
                 final String dataSourceLocation = dataSource.get("Location");
                 final int dataSourceOffset = dataSource.get("Offset");
                 final int dataSourceLength = dataSource.get("Length");
-                final byte[] stream;
+
+                mipOffset = IntStream.range(0, mip + 1)
+                    .map(x -> getTextureSize(reader, dimension, x) * (x == mip ? slice : getSliceCount(x)))
+                    .sum();
+
+                Objects.checkFromIndexSize(mipOffset, mipLength, dataSourceLength);
 
                 try {
-                    stream = packfile.extract("%s.core.stream".formatted(dataSourceLocation));
+                    // Only read the requested mip rather than the whole stream file shared with other mips and textures
+                    mipBuffer = ByteBuffer.wrap(packfile.read("%s.core.stream".formatted(dataSourceLocation), (long) dataSourceOffset + mipOffset, mipLength));
                 } catch (IOException e) {
                     throw new RuntimeException(e);
                 }
-
-                mipBuffer = ByteBuffer.wrap(stream).slice(dataSourceOffset, dataSourceLength);
-                mipOffset = IntStream.range(0, mip + 1)
-                    .map(x -> getTextureSize(reader, dimension, x) * (x == mip ? slice : getSliceCount(x)))
-                    .sum();
             } else {
-                mipBuffer = ByteBuffer.wrap(data.get("InternalData"));
                 mipOffset = IntStream.range(externalMipCount, mip + 1)
                     .map(x -> getTextureSize(reader, dimension, x) * (x == mip ? slice : getSliceCount(x)))
                     .sum();
+                mipBuffer = ByteBuffer.wrap(data.get("InternalData")).slice(mipOffset, mipLength);
             }
 
             return new ImageData(
                 reader,
-                mipBuffer.slice(mipOffset, mipLength).order(ByteOrder.LITTLE_ENDIAN),
+                mipBuffer.order(ByteOrder.LITTLE_ENDIAN),
                 mipDimension.width,
                 mipDimension.height
             );
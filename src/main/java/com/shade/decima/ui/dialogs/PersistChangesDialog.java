@@ -4,9 +4,8 @@ import com.shade.decima.model.app.Project;
 import com.shade.decima.model.app.ProjectPersister;
 import com.shade.decima.model.base.GameType;
 import com.shade.decima.model.packfile.Packfile;
-import com.shade.decima.model.packfile.PackfileBase;
+import com.shade.decima.model.packfile.PackfileManager;
 import com.shade.decima.model.packfile.PackfileWriter;
-import com.shade.decima.model.packfile.resource.PackfileResource;
 import com.shade.decima.model.util.Compressor;
 import com.shade.decima.ui.Application;
 import com.shade.decima.ui.controls.FileExtensionFilter;
@@ -225,12 +224,36 @@ public class PersistChangesDialog extends BaseDialog {
             final int result = chooser.showSaveDialog(getDialog());
 
             if (result == JFileChooser.APPROVE_OPTION) {
+                final Path path = chooser.getSelectedFile().toPath();
+                final boolean append;
+
+                if (Files.exists(path)) {
+                    final int appendResult = JOptionPane.showConfirmDialog(
+                        getDialog(),
+                        "The patch packfile already exists. Would you like to append changes to it?\nOtherwise, it will be overwritten.",
+                        "Confirm Append",
+                        JOptionPane.YES_NO_CANCEL_OPTION,
+                        JOptionPane.QUESTION_MESSAGE
+                    );
+
+                    if (appendResult != JOptionPane.YES_OPTION && appendResult != JOptionPane.NO_OPTION) {
+                        return false;
+                    }
+
+                    append = appendResult == JOptionPane.YES_OPTION;
+                } else {
+                    append = false;
+                }
+
+                final boolean mounted = findMountedPackfile(path) != null;
+
                 ProgressDialog.showProgressDialog(getDialog(), "Persist changes", monitor -> {
-                    persistAsPatch(monitor, chooser.getSelectedFile().toPath(), options);
+                    persistAsPatch(monitor, path, options, append);
                     return null;
                 });
 
-                JOptionPane.showMessageDialog(getDialog(), "Patch packfile was created successfully.");
+                JOptionPane.showMessageDialog(getDialog(), (append ? "Patch packfile was updated successfully." : "Patch packfile was created successfully.")
+                    + (mounted ? "\n\nTo see the changes in the application, you might need to reload the project." : ""));
 
                 return true;
             }
@@ -239,7 +262,7 @@ public class PersistChangesDialog extends BaseDialog {
         return false;
     }
 
-    private void persistAsPatch(@NotNull ProgressMonitor monitor, @NotNull Path path, @NotNull PackfileWriter.Options options) throws IOException {
+    private void persistAsPatch(@NotNull ProgressMonitor monitor, @NotNull Path path, @NotNull PackfileWriter.Options options, boolean append) throws IOException {
         final Project project = root.getProject();
         final ProjectPersister persister = project.getPersister();
 
@@ -249,8 +272,28 @@ public class PersistChangesDialog extends BaseDialog {
                     writer.add(persister.getMergedChange(file).toResource());
                 }
 
-                try (FileChannel channel = FileChannel.open(path, WRITE, CREATE, TRUNCATE_EXISTING)) {
-                    writer.write(monitor, channel, project.getCompressor(), options);
+                // The packfile is changed in place, so it can't stay mounted, as reads of a changed file fail
+                final PackfileManager manager = project.getPackfileManager();
+                final Packfile mounted = findMountedPackfile(path);
+
+                if (mounted != null) {
+                    manager.unmount(mounted);
+                }
+
+                try {
+                    if (append) {
+                        try (FileChannel channel = FileChannel.open(path, READ, WRITE)) {
+                            writer.append(monitor, channel, project.getCompressor(), options, Path.of(path + ".append"));
+                        }
+                    } else {
+                        try (FileChannel channel = FileChannel.open(path, READ, WRITE, CREATE, TRUNCATE_EXISTING)) {
+                            writer.write(monitor, channel, project.getCompressor(), options);
+                        }
+                    }
+                } finally {
+                    if (mounted != null) {
+                        manager.mount(path);
+                    }
                 }
             }
 
@@ -258,6 +301,19 @@ public class PersistChangesDialog extends BaseDialog {
         }
     }
 
+    @Nullable
+    private Packfile findMountedPackfile(@NotNull Path path) {
+        final Path normalized = path.toAbsolutePath().normalize();
+
+        for (Packfile packfile : root.getProject().getPackfileManager().getPackfiles()) {
+            if (packfile.getPath().toAbsolutePath().normalize().equals(normalized)) {
+                return packfile;
+            }
+        }
+
+        return null;
+    }
+
     private void updateExistingPackfiles(@NotNull ProgressMonitor monitor, @NotNull PackfileWriter.Options options, boolean createBackups) throws IOException {
         final var project = root.getProject();
         final var persister = project.getPersister();
@@ -273,20 +329,18 @@ public class PersistChangesDialog extends BaseDialog {
                 final Set<Long> changes = entry.getValue();
 
                 try (PackfileWriter writer = new PackfileWriter()) {
-                    for (PackfileBase.FileEntry file : packfile.getFileEntries()) {
-                        if (!changes.contains(file.hash())) {
-                            writer.add(new PackfileResource(packfile, file));
+                    for (NavigatorFileNode file : persister.getFiles()) {
+                        if (changes.contains(file.getHash())) {
+                            writer.add(persister.getMergedChange(file).toResource());
                         }
                     }
 
-                    for (NavigatorFileNode file : persister.getFiles()) {
-                        writer.add(persister.getMergedChange(file).toResource());
-                    }
+                    writer.addPackfile(packfile);
 
                     final Path patchPath = Path.of(packfile.getPath() + ".patch");
                     final Path backupPath = Path.of(packfile.getPath() + ".backup");
 
-                    try (FileChannel channel = FileChannel.open(patchPath, WRITE, CREATE, TRUNCATE_EXISTING)) {
+                    try (FileChannel channel = FileChannel.open(patchPath, READ, WRITE, CREATE, TRUNCATE_EXISTING)) {
                         writer.write(monitor, channel, project.getCompressor(), options);
                     }
 
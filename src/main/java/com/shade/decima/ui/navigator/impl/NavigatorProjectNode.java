@@ -4,6 +4,7 @@ import com.shade.decima.model.app.Project;
 import com.shade.decima.model.app.ProjectContainer;
 import com.shade.decima.model.packfile.Packfile;
 import com.shade.decima.model.packfile.PackfileManager;
+import com.shade.decima.ui.Application;
 import com.shade.platform.model.runtime.ProgressMonitor;
 import com.shade.util.NotNull;
 import com.shade.util.Nullable;
@@ -46,7 +47,7 @@ public class NavigatorProjectNode extends NavigatorNode {
     @NotNull
     @Override
     protected NavigatorNode[] loadChildren(@NotNull ProgressMonitor monitor) throws IOException {
-        project = new Project(container);
+        project = new Project(container, Application.getFrame().getWorkspace().getPackfileTableCachePath());
         project.mountDefaults();
 
         final PackfileManager manager = project.getPackfileManager();
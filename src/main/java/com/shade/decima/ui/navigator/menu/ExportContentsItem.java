@@ -11,6 +11,7 @@ import com.shade.util.NotNull;
 import javax.swing.*;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.UncheckedIOException;
 import java.nio.file.Files;
@@ -20,6 +21,8 @@ import static java.nio.file.StandardOpenOption.*;
 
 @MenuItemRegistration(parent = CTX_MENU_NAVIGATOR_ID, name = "Export Contents\u2026", icon = "Editor.exportIcon", group = CTX_MENU_NAVIGATOR_GROUP_EDIT, order = 2000)
 public class ExportContentsItem extends MenuItem {
+    private static final int READ_AHEAD_CHUNKS = 4;
+
     @Override
     public void perform(@NotNull MenuItemContext ctx) {
         final NavigatorFileNode node = (NavigatorFileNode) ctx.getData(PlatformDataKeys.SELECTION_KEY);
@@ -27,8 +30,11 @@ public class ExportContentsItem extends MenuItem {
         chooser.setSelectedFile(new File(node.getLabel()));
 
         if (chooser.showSaveDialog(Application.getFrame()) == JFileChooser.APPROVE_OPTION) {
-            try (OutputStream os = Files.newOutputStream(chooser.getSelectedFile().toPath(), CREATE, WRITE, TRUNCATE_EXISTING)) {
-                os.write(node.getPackfile().extract(node.getHash()));
+            try (
+                InputStream is = node.getPackfile().newInputStream(node.getHash(), READ_AHEAD_CHUNKS);
+                OutputStream os = Files.newOutputStream(chooser.getSelectedFile().toPath(), CREATE, WRITE, TRUNCATE_EXISTING)
+            ) {
+                is.transferTo(os);
             } catch (IOException e) {
                 throw new UncheckedIOException(e);
             }
@@ -178,6 +178,10 @@ public final class IOUtils {
         return (value + to - 1) / to * to;
     }
 
+    public static long alignUp(long value, long to) {
+        return (value + to - 1) / to * to;
+    }
+
     public static int wrapAround(int index, int max) {
         return (index % max + max) % max;
     }
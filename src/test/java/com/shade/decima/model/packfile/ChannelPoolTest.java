@@ -0,0 +1,193 @@
+package com.shade.decima.model.packfile;
+
+import com.shade.util.NotNull;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class ChannelPoolTest {
+    @TempDir
+    private Path directory;
+
+    @Test
+    public void reopenTest() throws IOException {
+        final ChannelPool pool = new ChannelPool(1);
+        final Path first = write("first.bin", "first");
+        final Path second = write("second.bin", "second");
+
+        try (FileChannel a = pool.open(first); FileChannel b = pool.open(second)) {
+            Assertions.assertEquals("first", read(a, 0, 5));
+            Assertions.assertEquals("second", read(b, 0, 6));
+            Assertions.assertEquals("irst", read(a, 1, 4));
+
+            // Only one file is kept open, so each switch between them reopens a file
+            Assertions.assertEquals(new ChannelPool.Statistics(0, 2, 3, 4, 1, 1), pool.getStatistics());
+        }
+
+        Assertions.assertEquals(0, pool.getStatistics().count());
+    }
+
+    @Test
+    public void replacedFileTest() throws IOException {
+        final ChannelPool pool = new ChannelPool(1);
+        final Path first = write("first.bin", "first");
+        final Path second = write("second.bin", "second");
+
+        try (FileChannel a = pool.open(first); FileChannel b = pool.open(second)) {
+            Assertions.assertEquals("first", read(a, 0, 5));
+
+            // Evicts the first file, then replaces it with a file of the same size and modification time
+            Assertions.assertEquals("second", read(b, 0, 6));
+
+            final Path replacement = write("replacement.bin", "FIRST");
+            Files.setLastModifiedTime(replacement, Files.getLastModifiedTime(first));
+            Files.move(replacement, first, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+            Assertions.assertThrows(IOException.class, () -> read(a, 0, 5));
+            Assertions.assertThrows(IOException.class, a::size);
+            Assertions.assertEquals("second", read(b, 0, 6));
+        }
+    }
+
+    @Test
+    public void modifiedFileTest() throws IOException {
+        final ChannelPool pool = new ChannelPool(1);
+        final Path first = write("first.bin", "first");
+        final Path second = write("second.bin", "second");
+
+        try (FileChannel a = pool.open(first); FileChannel b = pool.open(second)) {
+            Assertions.assertEquals("second", read(b, 0, 6));
+
+            Files.setLastModifiedTime(first, FileTime.fromMillis(Files.getLastModifiedTime(first).toMillis() - 10_000));
+
+            Assertions.assertThrows(IOException.class, () -> read(a, 0, 5));
+        }
+    }
+
+    @Test
+    public void lockTest() throws IOException {
+        final ChannelPool pool = new ChannelPool(1);
+        final Path first = write("first.bin", "first");
+        final Path second = write("second.bin", "second");
+
+        try (FileChannel a = pool.open(first); FileChannel b = pool.open(second)) {
+            try (FileLock lock = a.lock(0, Long.MAX_VALUE, true)) {
+                Assertions.assertTrue(lock.isValid());
+                Assertions.assertTrue(lock.isShared());
+                Assertions.assertSame(a, lock.channel());
+
+                // A locked file is in use, so it's not closed when other files are read
+                Assertions.assertEquals("second", read(b, 0, 6));
+                Assertions.assertTrue(lock.isValid());
+
+                final long hits = pool.getStatistics().hits();
+
+                Assertions.assertEquals("first", read(a, 0, 5));
+                Assertions.assertEquals(hits + 1, pool.getStatistics().hits());
+            }
+
+            // Once the lock is released, the file can be closed again
+            Assertions.assertEquals("second", read(b, 0, 6));
+            Assertions.assertEquals(1, pool.getStatistics().count());
+
+            final FileLock lock = a.tryLock(0, Long.MAX_VALUE, true);
+
+            Assertions.assertNotNull(lock);
+            Assertions.assertTrue(lock.isValid());
+
+            lock.release();
+            lock.release();
+
+            Assertions.assertFalse(lock.isValid());
+        }
+    }
+
+    @Test
+    public void closedChannelTest() throws IOException {
+        final ChannelPool pool = new ChannelPool(1);
+        final FileChannel channel = pool.open(write("first.bin", "first"));
+
+        channel.close();
+
+        Assertions.assertThrows(ClosedChannelException.class, () -> read(channel, 0, 5));
+        Assertions.assertEquals(0, pool.getStatistics().count());
+    }
+
+    @Test
+    public void concurrentReadsTest() throws Exception {
+        final ChannelPool pool = new ChannelPool(2);
+        final FileChannel[] channels = new FileChannel[4];
+
+        for (int i = 0; i < channels.length; i++) {
+            channels[i] = pool.open(write("file" + i + ".bin", "file" + i));
+        }
+
+        final ExecutorService executor = Executors.newFixedThreadPool(8);
+
+        try {
+            final List<Future<?>> futures = new ArrayList<>();
+
+            for (int thread = 0; thread < 8; thread++) {
+                final int seed = thread;
+
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < 1000; i++) {
+                        final int index = (seed + i) % channels.length;
+                        Assertions.assertEquals("file" + index, read(channels[index], 0, 5));
+                    }
+
+                    return null;
+                }));
+            }
+
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        // Files are closed once they're no longer read, so the pool fits its capacity again
+        final ChannelPool.Statistics statistics = pool.getStatistics();
+        Assertions.assertEquals(2, statistics.count());
+        Assertions.assertEquals(8000, statistics.hits() + statistics.reopens());
+
+        for (FileChannel channel : channels) {
+            channel.close();
+        }
+
+        Assertions.assertEquals(0, pool.getStatistics().count());
+    }
+
+    @NotNull
+    private Path write(@NotNull String name, @NotNull String contents) throws IOException {
+        return Files.writeString(directory.resolve(name), contents, StandardCharsets.UTF_8);
+    }
+
+    @NotNull
+    private static String read(@NotNull FileChannel channel, long position, int length) throws IOException {
+        final ByteBuffer buffer = ByteBuffer.allocate(length);
+
+        while (buffer.hasRemaining()) {
+            Assertions.assertTrue(channel.read(buffer, position + buffer.position()) > 0);
+        }
+
+        return new String(buffer.array(), StandardCharsets.UTF_8);
+    }
+}
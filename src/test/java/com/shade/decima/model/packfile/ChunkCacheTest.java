@@ -0,0 +1,240 @@
+package com.shade.decima.model.packfile;
+
+import com.shade.decima.model.packfile.resource.BufferResource;
+import com.shade.decima.model.util.Codec;
+import com.shade.decima.model.util.LZCodec;
+import com.shade.platform.model.runtime.VoidProgressMonitor;
+import com.shade.platform.model.util.IOUtils;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+
+public class ChunkCacheTest {
+    private static final int CHUNK_SIZE = 0x40000;
+    private static final int CHUNKS_COUNT = 4;
+
+    private final Codec codec = new LZCodec();
+    private final byte[] contents = new byte[CHUNK_SIZE * CHUNKS_COUNT];
+    private final byte[] archive;
+
+    public ChunkCacheTest() throws IOException {
+        new Random(42).nextBytes(contents);
+
+        try (PackfileWriter writer = new PackfileWriter(); ByteArrayChannel channel = new ByteArrayChannel()) {
+            writer.add(new BufferResource(contents, 0));
+
+            final long written = writer.write(new VoidProgressMonitor(), channel, codec, new PackfileWriter.Options(Codec.Level.FAST, false));
+
+            channel.position(0);
+            archive = IOUtils.readExact(channel, Math.toIntExact(written)).array();
+        }
+    }
+
+    @AfterEach
+    public void tearDown() {
+        codec.close();
+    }
+
+    @Test
+    public void evictionTest() throws IOException {
+        final ChunkCache cache = new ChunkCache(0x300);
+
+        try (Packfile packfile = openPackfile(cache)) {
+            cache.put(packfile, 0x000, new byte[0x100]);
+            cache.put(packfile, 0x100, new byte[0x100]);
+            cache.put(packfile, 0x200, new byte[0x100]);
+
+            Assertions.assertEquals(new ChunkCache.Statistics(0, 0, 0, 3, 0x300, 0x300), cache.getStatistics());
+
+            // Touch the oldest chunk so the second one becomes the least recently used
+            Assertions.assertNotNull(cache.get(packfile, 0x000));
+
+            cache.put(packfile, 0x300, new byte[0x100]);
+
+            Assertions.assertNull(cache.get(packfile, 0x100));
+            Assertions.assertNotNull(cache.get(packfile, 0x000));
+            Assertions.assertNotNull(cache.get(packfile, 0x200));
+            Assertions.assertNotNull(cache.get(packfile, 0x300));
+            Assertions.assertEquals(new ChunkCache.Statistics(4, 1, 1, 3, 0x300, 0x300), cache.getStatistics());
+
+            // A chunk larger than the whole cache is not cached and doesn't evict anything
+            cache.put(packfile, 0x400, new byte[0x301]);
+
+            Assertions.assertNull(cache.get(packfile, 0x400));
+            Assertions.assertEquals(3, cache.getStatistics().count());
+            Assertions.assertEquals(1, cache.getStatistics().evictions());
+        }
+    }
+
+    @Test
+    public void sizeAccountingTest() throws IOException {
+        final ChunkCache cache = new ChunkCache(0x1000);
+
+        try (Packfile first = openPackfile(cache); Packfile second = openPackfile(cache)) {
+            cache.put(first, 0x000, new byte[0x100]);
+            cache.put(first, 0x100, new byte[0x200]);
+            cache.put(second, 0x000, new byte[0x300]);
+
+            Assertions.assertEquals(0x600, cache.getStatistics().size());
+
+            // Replacing a chunk accounts for the size of the previous data
+            cache.put(first, 0x100, new byte[0x50]);
+
+            Assertions.assertEquals(0x450, cache.getStatistics().size());
+            Assertions.assertEquals(3, cache.getStatistics().count());
+
+            // Chunks are keyed by their packfile, so invalidating one packfile keeps chunks of another
+            cache.invalidate(first);
+
+            Assertions.assertNull(cache.get(first, 0x000));
+            Assertions.assertNotNull(cache.get(second, 0x000));
+            Assertions.assertEquals(0x300, cache.getStatistics().size());
+            Assertions.assertEquals(1, cache.getStatistics().count());
+
+            cache.clear();
+
+            Assertions.assertEquals(0, cache.getStatistics().size());
+            Assertions.assertEquals(0, cache.getStatistics().count());
+        }
+    }
+
+    @Test
+    public void sharedReadersTest() throws IOException {
+        final ChunkCache cache = new ChunkCache(CHUNK_SIZE * 8);
+
+        try (Packfile packfile = openPackfile(cache)) {
+            try (SeekableByteChannel first = packfile.newChannel(0); SeekableByteChannel second = packfile.newChannel(0)) {
+                Assertions.assertArrayEquals(contents, readAll(first));
+
+                final ChunkCache.Statistics statistics = cache.getStatistics();
+
+                Assertions.assertEquals(CHUNKS_COUNT, statistics.count());
+                Assertions.assertEquals(contents.length, statistics.size());
+
+                // The second reader must get all chunks decompressed by the first one
+                Assertions.assertArrayEquals(contents, readAll(second));
+                Assertions.assertEquals(statistics.misses(), cache.getStatistics().misses());
+                Assertions.assertEquals(statistics.hits() + CHUNKS_COUNT, cache.getStatistics().hits());
+                Assertions.assertEquals(CHUNKS_COUNT, cache.getStatistics().count());
+            }
+
+            // Other ways of random access share the same chunks
+            final long misses = cache.getStatistics().misses();
+
+            Assertions.assertArrayEquals(contents, packfile.read(0, 0, contents.length));
+            Assertions.assertEquals(misses, cache.getStatistics().misses());
+        }
+
+        // Closing the packfile removes its chunks
+        Assertions.assertEquals(0, cache.getStatistics().count());
+        Assertions.assertEquals(0, cache.getStatistics().size());
+    }
+
+    @Test
+    public void bulkReadersTest() throws IOException {
+        final ChunkCache cache = new ChunkCache(CHUNK_SIZE * 8);
+
+        try (Packfile packfile = openPackfile(cache)) {
+            Assertions.assertArrayEquals(contents, packfile.extract(0));
+
+            for (int readAhead : new int[]{0, 1, 4}) {
+                try (InputStream is = packfile.newInputStream(0, readAhead)) {
+                    Assertions.assertArrayEquals(contents, is.readAllBytes());
+                }
+            }
+
+            // Large files and sequential readers read each chunk once, so caching their chunks would only evict useful ones
+            Assertions.assertEquals(new ChunkCache.Statistics(0, 0, 0, 0, 0, CHUNK_SIZE * 8), cache.getStatistics());
+        }
+    }
+
+    @Test
+    public void smallFilesTest() throws IOException {
+        final ChunkCache cache = new ChunkCache(CHUNK_SIZE * 8);
+        final byte[][] files = new byte[8][0x1000];
+
+        try (PackfileWriter writer = new PackfileWriter(); ByteArrayChannel channel = new ByteArrayChannel()) {
+            for (int i = 0; i < files.length; i++) {
+                new Random(i).nextBytes(files[i]);
+                writer.add(new BufferResource(files[i], i));
+            }
+
+            writer.write(new VoidProgressMonitor(), channel, codec, new PackfileWriter.Options(Codec.Level.FAST, false));
+            channel.position(0);
+
+            try (Packfile packfile = new Packfile(channel, codec, null, Path.of("dummy"), false, cache)) {
+                for (int i = 0; i < files.length; i++) {
+                    Assertions.assertArrayEquals(files[i], packfile.extract(i));
+                }
+
+                // All files share a single chunk, so it's decompressed only once
+                Assertions.assertEquals(1, cache.getStatistics().misses());
+                Assertions.assertEquals(files.length - 1, cache.getStatistics().hits());
+                Assertions.assertEquals(1, cache.getStatistics().count());
+
+                Assertions.assertArrayEquals(files[0], packfile.extract(0));
+                Assertions.assertEquals(files.length, cache.getStatistics().hits());
+            }
+        }
+    }
+
+    @Test
+    public void shortReadsTest() throws IOException {
+        final var channel = new ByteArrayChannel(archive) {
+            private boolean limited;
+
+            @Override
+            public int read(ByteBuffer dst) throws IOException {
+                if (!limited) {
+                    return super.read(dst);
+                }
+
+                // Channels other than files may read fewer bytes than requested
+                final int limit = dst.limit();
+
+                try {
+                    return super.read(dst.limit(Math.min(limit, dst.position() + 7)));
+                } finally {
+                    dst.limit(limit);
+                }
+            }
+        };
+
+        try (Packfile packfile = new Packfile(channel, codec, null, Path.of("dummy"), false, null)) {
+            channel.limited = true;
+            Assertions.assertArrayEquals(contents, packfile.extract(0));
+        }
+    }
+
+    @Test
+    public void truncatedDataTest() throws IOException {
+        final byte[] truncated = Arrays.copyOf(archive, archive.length - 1);
+
+        try (Packfile packfile = new Packfile(new ByteArrayChannel(truncated), codec, null, Path.of("dummy"), false, null)) {
+            Assertions.assertThrows(EOFException.class, () -> packfile.extract(0));
+        }
+    }
+
+    private Packfile openPackfile(ChunkCache cache) throws IOException {
+        return new Packfile(new ByteArrayChannel(archive), codec, null, Path.of("dummy"), false, cache);
+    }
+
+    private static byte[] readAll(SeekableByteChannel channel) throws IOException {
+        final ByteBuffer buffer = ByteBuffer.allocate(Math.toIntExact(channel.size()));
+
+        while (buffer.hasRemaining()) {
+            Assertions.assertTrue(channel.read(buffer) > 0);
+        }
+
+        return buffer.array();
+    }
+}
@@ -0,0 +1,135 @@
+package com.shade.decima.model.packfile;
+
+import com.shade.decima.model.packfile.PackfileBase.ChunkEntry;
+import com.shade.decima.model.packfile.PackfileBase.FileEntry;
+import com.shade.decima.model.packfile.PackfileBase.Header;
+import com.shade.decima.model.packfile.PackfileBase.Span;
+import com.shade.util.NotNull;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.HexFormat;
+import java.util.function.Consumer;
+
+/**
+ * Checks encryption of packfiles against data encrypted by the reference byte-wise implementation it replaced.
+ */
+public class PackfileEncryptionTest {
+    private static final Span DECOMPRESSED = new Span(0x123456789L, 0x40000, 0x1badb002);
+    private static final Span COMPRESSED = new Span(0x2345678L, 0x1f00f, 0x2badb003);
+
+    private static final byte[] DATA_CIPHERTEXT = HexFormat.of().parseHex(
+        "76f14c13e839eb2cfd66ab9115c321760681dc8378895bbc6d965b01855391c69611acf30819cb0cdd06cbf175"
+    );
+    private static final byte[] HEADER_CIPHERTEXT = HexFormat.of().parseHex(
+        "50403021dec0577ecdb62674bf1cb91ebde32fd2948902c4cc3cd67a6c12c932975d29db7d6ab573"
+    );
+    private static final byte[] FILE_ENTRY_CIPHERTEXT = HexFormat.of().parseHex(
+        "8171a7900df0ad0bccb1e7d4b26032b6887c87475ac17ddc959b804f3412ed5e"
+    );
+    private static final byte[] CHUNK_ENTRY_CIPHERTEXT = HexFormat.of().parseHex(
+        "adf42345e2389f15f396a3fe02b0ad1b9a9943c9f57618eeb0de90bc03b0ad2b"
+    );
+
+    @ParameterizedTest
+    @ValueSource(ints = {0, 1, 15, 16, 17, 31, 32, 45})
+    public void dataTest(int length) {
+        final byte[] expected = new byte[length];
+        System.arraycopy(DATA_CIPHERTEXT, 0, expected, 0, length);
+
+        // Derived key
+        Assertions.assertArrayEquals(expected, swizzle(createPlaintext(length), buffer -> ChunkEntry.swizzle(buffer, DECOMPRESSED)));
+
+        // Precomputed key
+        final long[] key = new long[2];
+        ChunkEntry.getDataKey(DECOMPRESSED, key, 0);
+        Assertions.assertArrayEquals(expected, swizzle(createPlaintext(length), buffer -> ChunkEntry.swizzle(buffer, key[0], key[1])));
+
+        // Key stored in a chunk table
+        final ChunkEntry chunk = new ChunkEntry(DECOMPRESSED, COMPRESSED);
+        final PackfileBase.ChunkTable table = new PackfileBase.ChunkTable(new ChunkEntry[]{chunk}, true);
+        Assertions.assertArrayEquals(expected, swizzle(createPlaintext(length), buffer -> table.swizzle(chunk, buffer)));
+
+        // Decryption is the same operation
+        Assertions.assertArrayEquals(createPlaintext(length), swizzle(expected.clone(), buffer -> ChunkEntry.swizzle(buffer, DECOMPRESSED)));
+    }
+
+    @Test
+    public void dataBufferTest() {
+        final byte[] plaintext = createPlaintext(DATA_CIPHERTEXT.length);
+
+        // Only remaining data is processed, and the position of the buffer is not changed
+        final ByteBuffer heap = ByteBuffer.allocate(plaintext.length + 3).position(3).put(plaintext).position(3);
+        ChunkEntry.swizzle(heap, DECOMPRESSED);
+        Assertions.assertEquals(3, heap.position());
+        Assertions.assertArrayEquals(DATA_CIPHERTEXT, getBytes(heap));
+
+        final ByteBuffer direct = ByteBuffer.allocateDirect(plaintext.length + 3).position(3).put(plaintext).position(3);
+        ChunkEntry.swizzle(direct, DECOMPRESSED);
+        Assertions.assertEquals(3, direct.position());
+        Assertions.assertArrayEquals(DATA_CIPHERTEXT, getBytes(direct));
+    }
+
+    @Test
+    public void headerTest() {
+        final Header header = new Header(PackfileBase.MAGIC_ENCRYPTED, 0x7e57c0de, 0x1122334455L, 0x66778899aaL, 12345, 678, 0x40000);
+        final ByteBuffer buffer = ByteBuffer.allocate(Header.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+
+        header.write(buffer);
+        Assertions.assertArrayEquals(HEADER_CIPHERTEXT, buffer.array());
+        Assertions.assertEquals(header, Header.read(wrap(HEADER_CIPHERTEXT)));
+    }
+
+    @Test
+    public void fileEntryTest() {
+        final FileEntry entry = new FileEntry(42, 0x0badf00d, 0xfedcba9876543210L, new Span(0x987654321L, 0x12345, 0x5eed1234));
+        final ByteBuffer buffer = ByteBuffer.allocate(FileEntry.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+
+        entry.write(buffer, true);
+        Assertions.assertArrayEquals(FILE_ENTRY_CIPHERTEXT, buffer.array());
+        Assertions.assertEquals(entry, FileEntry.read(wrap(FILE_ENTRY_CIPHERTEXT), true));
+    }
+
+    @Test
+    public void chunkEntryTest() {
+        final ChunkEntry entry = new ChunkEntry(DECOMPRESSED, COMPRESSED);
+        final ByteBuffer buffer = ByteBuffer.allocate(ChunkEntry.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+
+        entry.write(buffer, true);
+        Assertions.assertArrayEquals(CHUNK_ENTRY_CIPHERTEXT, buffer.array());
+        Assertions.assertEquals(entry, ChunkEntry.read(wrap(CHUNK_ENTRY_CIPHERTEXT), true));
+    }
+
+    @NotNull
+    private static byte[] createPlaintext(int length) {
+        final byte[] data = new byte[length];
+
+        for (int i = 0; i < length; i++) {
+            data[i] = (byte) (i * 7 + 3);
+        }
+
+        return data;
+    }
+
+    @NotNull
+    private static byte[] swizzle(@NotNull byte[] data, @NotNull Consumer<ByteBuffer> swizzler) {
+        swizzler.accept(ByteBuffer.wrap(data));
+        return data;
+    }
+
+    @NotNull
+    private static ByteBuffer wrap(@NotNull byte[] data) {
+        return ByteBuffer.wrap(data.clone()).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    @NotNull
+    private static byte[] getBytes(@NotNull ByteBuffer buffer) {
+        final byte[] bytes = new byte[buffer.remaining()];
+        buffer.get(buffer.position(), bytes);
+        return bytes;
+    }
+}
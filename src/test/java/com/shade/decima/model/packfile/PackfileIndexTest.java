@@ -0,0 +1,115 @@
+package com.shade.decima.model.packfile;
+
+import com.shade.decima.model.packfile.resource.BufferResource;
+import com.shade.decima.model.util.Codec;
+import com.shade.decima.model.util.LZCodec;
+import com.shade.platform.model.runtime.VoidProgressMonitor;
+import com.shade.util.NotNull;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.LongStream;
+
+public class PackfileIndexTest {
+    private final Codec codec = new LZCodec();
+
+    @Test
+    public void priorityTest() throws IOException {
+        final PackfileIndex index = new PackfileIndex(Comparator.naturalOrder());
+        final Packfile a = createPackfile("A.bin", 1, 2);
+        final Packfile b = createPackfile("B.bin", 1, 3);
+        final Packfile c = createPackfile("C.bin", 1, 2, 3);
+
+        // The order packfiles are added in must not matter
+        index.add(c);
+        index.add(a);
+        index.add(b);
+
+        Assertions.assertEquals(List.of(a, b, c), index.findAll(1));
+        Assertions.assertEquals(List.of(a, c), index.findAll(2));
+        Assertions.assertEquals(List.of(b, c), index.findAll(3));
+        Assertions.assertEquals(List.of(), index.findAll(4));
+
+        Assertions.assertSame(a, index.findAny(1));
+        Assertions.assertSame(a, index.findAny(2));
+        Assertions.assertSame(b, index.findAny(3));
+        Assertions.assertNull(index.findAny(4));
+        Assertions.assertEquals(3, index.size());
+
+        // Adding the same packfile again doesn't duplicate it
+        index.add(a);
+
+        Assertions.assertEquals(List.of(a, b, c), index.findAll(1));
+        Assertions.assertEquals(3, index.size());
+
+        index.clear();
+
+        Assertions.assertNull(index.findAny(1));
+        Assertions.assertEquals(0, index.size());
+    }
+
+    @Test
+    public void removeTest() throws IOException {
+        final PackfileIndex index = new PackfileIndex(Comparator.naturalOrder());
+        final long[] hashes = LongStream.range(0, 1000).map(i -> i << 32).toArray();
+        final Packfile a = createPackfile("A.bin", 1, 2);
+        final Packfile b = createPackfile("B.bin", hashes);
+
+        index.add(a);
+        index.add(b);
+        index.remove(a);
+
+        Assertions.assertEquals(List.of(b), index.findAll(0));
+        Assertions.assertNull(index.findAny(1));
+        Assertions.assertNull(index.findAny(2));
+        Assertions.assertEquals(hashes.length, index.size());
+
+        // Files that collided with removed ones can still be found
+        for (long hash : hashes) {
+            Assertions.assertSame(b, index.findAny(hash));
+        }
+
+        index.remove(b);
+
+        Assertions.assertNull(index.findAny(0));
+        Assertions.assertEquals(0, index.size());
+    }
+
+    @Test
+    public void growthTest() throws IOException {
+        final PackfileIndex index = new PackfileIndex(Comparator.naturalOrder());
+        final long[] hashes = LongStream.range(0, 100_000).map(i -> i << 32).toArray();
+        final Packfile packfile = createPackfile("A.bin", hashes);
+
+        index.add(packfile);
+
+        Assertions.assertEquals(hashes.length, index.size());
+
+        for (long hash : hashes) {
+            Assertions.assertSame(packfile, index.findAny(hash));
+        }
+
+        Assertions.assertNull(index.findAny(1));
+    }
+
+    @NotNull
+    private Packfile createPackfile(@NotNull String name, long... hashes) throws IOException {
+        final ByteArrayChannel channel = new ByteArrayChannel();
+
+        try (PackfileWriter writer = new PackfileWriter()) {
+            for (long hash : hashes) {
+                writer.add(new BufferResource(new byte[0], hash));
+            }
+
+            writer.write(new VoidProgressMonitor(), channel, codec, new PackfileWriter.Options(Codec.Level.FAST, false));
+        }
+
+        channel.position(0);
+
+        return new Packfile(channel, codec, null, Path.of(name));
+    }
+}
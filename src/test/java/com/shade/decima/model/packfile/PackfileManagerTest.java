@@ -0,0 +1,260 @@
+package com.shade.decima.model.packfile;
+
+import com.shade.decima.model.packfile.resource.BufferResource;
+import com.shade.decima.model.util.Codec;
+import com.shade.decima.model.util.LZCodec;
+import com.shade.platform.model.runtime.VoidProgressMonitor;
+import com.shade.util.NotNull;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+public class PackfileManagerTest {
+    private final Codec codec = new LZCodec();
+
+    @TempDir
+    private Path directory;
+
+    @Test
+    public void mountPriorityTest() throws IOException {
+        final Path patch = writePackfile(directory.resolve("Patch_1.bin"), 1, 2);
+        final Path initial = writePackfile(directory.resolve("Initial.bin"), 1, 3);
+        final Path remainder = writePackfile(directory.resolve("Remainder.bin"), 1, 2, 3);
+
+        for (List<Path> order : List.of(List.of(patch, initial, remainder), List.of(remainder, initial, patch), List.of(initial, remainder, patch))) {
+            try (PackfileManager manager = new PackfileManager(codec, null)) {
+                for (Path path : order) {
+                    Assertions.assertTrue(manager.mount(path));
+                }
+
+                // Patch packfiles come first, followed by other packfiles in the order of their names
+                Assertions.assertEquals(List.of(patch, initial, remainder), getPaths(manager.findAll(1)));
+                Assertions.assertEquals(List.of(patch, remainder), getPaths(manager.findAll(2)));
+                Assertions.assertEquals(List.of(initial, remainder), getPaths(manager.findAll(3)));
+
+                Assertions.assertArrayEquals(getContents(patch, 1), manager.findAny(1).extract(1));
+                Assertions.assertArrayEquals(getContents(initial, 3), manager.findAny(3).extract(3));
+                Assertions.assertNull(manager.findAny(4));
+            }
+        }
+    }
+
+    @Test
+    public void mountDuplicateTest() throws IOException {
+        final Path initial = writePackfile(directory.resolve("Initial.bin"), 1, 2);
+        final Path duplicate = writePackfile(Files.createDirectory(directory.resolve("other")).resolve("Initial.bin"), 1, 3);
+
+        try (PackfileManager manager = new PackfileManager(codec, null)) {
+            Assertions.assertTrue(manager.mount(initial));
+            Assertions.assertFalse(manager.mount(initial));
+            Assertions.assertFalse(manager.mount(duplicate));
+            Assertions.assertFalse(manager.mount(directory.resolve("Missing.bin")));
+
+            // Packfiles that weren't mounted must not end up in the index
+            Assertions.assertEquals(1, manager.getPackfiles().size());
+            Assertions.assertEquals(List.of(initial), getPaths(manager.findAll(1)));
+            Assertions.assertNull(manager.findAny(3));
+        }
+    }
+
+    @Test
+    public void unmountTest() throws IOException {
+        final Path patch = writePackfile(directory.resolve("Patch_1.bin"), 1, 2);
+        final Path initial = writePackfile(directory.resolve("Initial.bin"), 1, 3);
+
+        try (PackfileManager manager = new PackfileManager(codec, null)) {
+            Assertions.assertTrue(manager.mount(patch));
+            Assertions.assertTrue(manager.mount(initial));
+
+            final Packfile packfile = manager.findAny(2);
+
+            Assertions.assertTrue(manager.unmount(packfile));
+            Assertions.assertFalse(manager.unmount(packfile));
+            Assertions.assertEquals(List.of(initial), getPaths(manager.findAll(1)));
+            Assertions.assertNull(manager.findAny(2));
+
+            // Once unmounted, the packfile can be changed in place and mounted again
+            try (
+                PackfileWriter writer = new PackfileWriter();
+                FileChannel channel = FileChannel.open(patch, StandardOpenOption.READ, StandardOpenOption.WRITE)
+            ) {
+                writer.add(new BufferResource(getContents(patch, 4), 4));
+                writer.append(new VoidProgressMonitor(), channel, codec, new PackfileWriter.Options(Codec.Level.FAST, false), directory.resolve("backup"));
+            }
+
+            Assertions.assertTrue(manager.mount(patch));
+            Assertions.assertEquals(List.of(patch, initial), getPaths(manager.findAll(1)));
+            Assertions.assertArrayEquals(getContents(patch, 2), manager.findAny(2).extract(2));
+            Assertions.assertArrayEquals(getContents(patch, 4), manager.findAny(4).extract(4));
+        }
+    }
+
+    @Test
+    public void mountCachedTest() throws IOException {
+        final Path cache = directory.resolve("cache");
+        final Path patch = writePackfile(directory.resolve("Patch_1.bin"), 1, 2);
+        final Path initial = writePackfile(directory.resolve("Initial.bin"), 1, 3);
+
+        for (boolean cached : new boolean[]{false, true}) {
+            try (PackfileManager manager = new PackfileManager(codec, null, false, cache)) {
+                Assertions.assertTrue(manager.mount(patch));
+                Assertions.assertTrue(manager.mount(initial));
+
+                // Tables are cached during the first session, so packfiles of the second one are loaded lazily
+                for (Packfile packfile : manager.getPackfiles()) {
+                    Assertions.assertEquals(!cached, packfile.isLoaded());
+                }
+
+                Assertions.assertEquals(List.of(patch, initial), getPaths(manager.findAll(1)));
+                Assertions.assertEquals(List.of(initial), getPaths(manager.findAll(3)));
+                Assertions.assertArrayEquals(getContents(patch, 2), manager.findAny(2).extract(2));
+                Assertions.assertArrayEquals(getContents(initial, 3), manager.findAny(3).extract(3));
+                Assertions.assertNull(manager.findAny(4));
+            }
+        }
+    }
+
+    @Test
+    public void extractAsyncTest() throws Exception {
+        final Path patch = writePackfile(directory.resolve("Patch_1.bin"), 1, 2);
+        final Path initial = writePackfile(directory.resolve("Initial.bin"), 1, 3);
+
+        try (PackfileManager manager = new PackfileManager(codec, null)) {
+            Assertions.assertTrue(manager.mount(patch));
+            Assertions.assertTrue(manager.mount(initial));
+
+            Assertions.assertArrayEquals(getContents(patch, 1), getBytes(manager.extractAsync(1).get()));
+            Assertions.assertArrayEquals(getContents(patch, 2), getBytes(manager.extractAsync(2).get()));
+            Assertions.assertArrayEquals(getContents(initial, 3), getBytes(manager.extractAsync(3).get()));
+
+            final ExecutionException exception = Assertions.assertThrows(ExecutionException.class, () -> manager.extractAsync(4).get());
+            Assertions.assertInstanceOf(IllegalArgumentException.class, exception.getCause());
+        }
+    }
+
+    @Test
+    public void extractAsyncCoalescingTest() throws Exception {
+        final Path initial = writePackfile(directory.resolve("Initial.bin"), 1, 2);
+
+        try (PackfileManager manager = new PackfileManager(codec, null)) {
+            Assertions.assertTrue(manager.mount(initial));
+
+            final CompletableFuture<ByteBuffer> first;
+            final CompletableFuture<ByteBuffer> second;
+            final CompletableFuture<ByteBuffer> other;
+
+            // Small files are read through the chunk cache, so readers can't proceed while it's locked,
+            // and all requests are made while the first one is pending
+            synchronized (manager.getChunkCache()) {
+                first = manager.extractAsync(1);
+                second = manager.extractAsync(1);
+                other = manager.extractAsync(2);
+
+                // Cancelling one of the coalesced requests doesn't affect the others
+                Assertions.assertTrue(manager.extractAsync(1).cancel(false));
+                Assertions.assertFalse(first.isDone());
+            }
+
+            final ByteBuffer firstBuffer = first.get();
+            final ByteBuffer secondBuffer = second.get();
+
+            // Coalesced requests share contents, but not positions
+            Assertions.assertSame(firstBuffer.array(), secondBuffer.array());
+            Assertions.assertArrayEquals(getContents(initial, 1), getBytes(firstBuffer));
+            Assertions.assertEquals(0, secondBuffer.position());
+            Assertions.assertArrayEquals(getContents(initial, 1), getBytes(secondBuffer));
+            Assertions.assertArrayEquals(getContents(initial, 2), getBytes(other.get()));
+
+            // Completed requests are not reused
+            Assertions.assertNotSame(firstBuffer.array(), manager.extractAsync(1).get().array());
+        }
+    }
+
+    @Test
+    public void extractAllTest() throws IOException {
+        final Path patch = writePackfile(directory.resolve("Patch_1.bin"), 1, 2);
+        final Path initial = writePackfile(directory.resolve("Initial.bin"), 1, 3);
+        final Path remainder = writePackfile(directory.resolve("Remainder.bin"), 1, 2, 3, 5);
+
+        try (PackfileManager manager = new PackfileManager(codec, null)) {
+            Assertions.assertTrue(manager.mount(patch));
+            Assertions.assertTrue(manager.mount(initial));
+            Assertions.assertTrue(manager.mount(remainder));
+
+            final Map<Long, byte[]> contents = new HashMap<>();
+
+            manager.extractAll(List.of(5L, 3L, 2L, 1L), (hash, data) -> Assertions.assertNull(contents.put(hash, data)));
+
+            // Each file is read from the packfile findAny would return
+            Assertions.assertEquals(Set.of(1L, 2L, 3L, 5L), contents.keySet());
+            Assertions.assertArrayEquals(getContents(patch, 1), contents.get(1L));
+            Assertions.assertArrayEquals(getContents(patch, 2), contents.get(2L));
+            Assertions.assertArrayEquals(getContents(initial, 3), contents.get(3L));
+            Assertions.assertArrayEquals(getContents(remainder, 5), contents.get(5L));
+        }
+    }
+
+    @Test
+    public void extractAllFailureTest() throws IOException {
+        final Path initial = writePackfile(directory.resolve("Initial.bin"), 1, 2);
+
+        try (PackfileManager manager = new PackfileManager(codec, null)) {
+            Assertions.assertTrue(manager.mount(initial));
+
+            // Files are looked up before anything is read
+            final List<Long> extracted = new ArrayList<>();
+            Assertions.assertThrows(IllegalArgumentException.class, () -> manager.extractAll(List.of(1L, 4L), (hash, data) -> extracted.add(hash)));
+            Assertions.assertEquals(List.of(), extracted);
+
+            // Failures of the callback are propagated
+            final IOException exception = new IOException("Callback failed");
+            Assertions.assertSame(exception, Assertions.assertThrows(IOException.class, () -> manager.extractAll(List.of(1L, 2L), (hash, data) -> {
+                throw exception;
+            })));
+        }
+    }
+
+    @NotNull
+    private Path writePackfile(@NotNull Path path, long... hashes) throws IOException {
+        try (
+            PackfileWriter writer = new PackfileWriter();
+            FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE)
+        ) {
+            for (long hash : hashes) {
+                writer.add(new BufferResource(getContents(path, hash), hash));
+            }
+
+            writer.write(new VoidProgressMonitor(), channel, codec, new PackfileWriter.Options(Codec.Level.FAST, false));
+        }
+
+        return path;
+    }
+
+    @NotNull
+    private static byte[] getBytes(@NotNull ByteBuffer buffer) {
+        final byte[] bytes = new byte[buffer.remaining()];
+        buffer.get(bytes);
+        return bytes;
+    }
+
+    @NotNull
+    private static byte[] getContents(@NotNull Path path, long hash) {
+        return (path + ":" + hash).getBytes(StandardCharsets.UTF_8);
+    }
+
+    @NotNull
+    private static List<Path> getPaths(@NotNull List<Packfile> packfiles) {
+        return packfiles.stream().map(Packfile::getPath).toList();
+    }
+}
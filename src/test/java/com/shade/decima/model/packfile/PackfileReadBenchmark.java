@@ -0,0 +1,88 @@
+package com.shade.decima.model.packfile;
+
+import com.shade.decima.model.util.Codec;
+import com.shade.platform.model.util.IOUtils;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Measures how reading of a single packfile scales with the number of reader threads.
+ * <p>
+ * Not a part of the test suite because it requires a real archive and usually a native codec library.
+ * <p>
+ * Usage: {@code PackfileReadBenchmark <codec>[:<library>] <packfile> [max threads] [mapped]},
+ * for example {@code PackfileReadBenchmark oodle:oo2core_7_win64.dll DS/Packed_DX12/Patch.bin}
+ */
+public class PackfileReadBenchmark {
+    public static void main(String[] args) throws Exception {
+        if (args.length < 2) {
+            System.err.println("Usage: PackfileReadBenchmark <codec>[:<library>] <packfile> [max threads] [mapped]");
+            System.exit(1);
+        }
+
+        final String[] codec = args[0].split(":", 2);
+        final Path packfilePath = Path.of(args[1]);
+        final int maxThreads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+        final boolean mapped = args.length > 3 && Boolean.parseBoolean(args[3]);
+
+        try (
+            Codec compressor = Codec.create(codec[0], codec.length > 1 ? Path.of(codec[1]) : null);
+            Packfile packfile = new Packfile(FileChannel.open(packfilePath, StandardOpenOption.READ), compressor, null, packfilePath, mapped, null)
+        ) {
+            final List<PackfileBase.FileEntry> files = new ArrayList<>(packfile.getFileEntries());
+
+            // Warm up the page cache and the JIT
+            run(packfile, files, maxThreads);
+
+            for (int threads = 1; threads <= maxThreads; threads *= 2) {
+                final long start = System.nanoTime();
+                final long read = run(packfile, files, threads);
+                final long elapsed = System.nanoTime() - start;
+
+                System.out.printf(
+                    "threads: %2d, files: %d, read: %s, time: %d ms, throughput: %s/s%n",
+                    threads, files.size(), IOUtils.formatSize(read), elapsed / 1_000_000, IOUtils.formatSize((long) (read / (elapsed / 1e9)))
+                );
+            }
+        }
+    }
+
+    private static long run(Packfile packfile, List<PackfileBase.FileEntry> files, int threads) throws Exception {
+        final ExecutorService executor = Executors.newFixedThreadPool(threads);
+        final AtomicLong read = new AtomicLong();
+
+        try {
+            final List<Future<?>> futures = new ArrayList<>();
+
+            for (int i = 0; i < threads; i++) {
+                final int offset = i;
+
+                futures.add(executor.submit(() -> {
+                    for (int j = offset; j < files.size(); j += threads) {
+                        read.addAndGet(packfile.extract(files.get(j).hash()).length);
+                    }
+                    return null;
+                }));
+            }
+
+            for (Future<?> future : futures) {
+                try {
+                    future.get();
+                } catch (ExecutionException e) {
+                    throw e.getCause() instanceof IOException io ? io : e;
+                }
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        return read.get();
+    }
+}
@@ -0,0 +1,101 @@
+package com.shade.decima.model.packfile;
+
+import com.shade.decima.model.packfile.PackfileBase.ChunkEntry;
+import com.shade.decima.model.packfile.PackfileBase.Span;
+import com.shade.decima.model.util.Compressor;
+import com.shade.platform.model.util.IOUtils;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+/**
+ * Measures throughput of encryption of chunk data, with keys derived for every chunk and with precomputed keys,
+ * compared to applying a key one byte at a time.
+ * <p>
+ * Not a part of the test suite because its results depend on the machine it's run on.
+ * <p>
+ * Usage: {@code PackfileSwizzleBenchmark [total size in MiB] [rounds]}
+ */
+public class PackfileSwizzleBenchmark {
+    public static void main(String[] args) {
+        final long total = (args.length > 0 ? Long.parseLong(args[0]) : 1024) * 1024 * 1024;
+        final int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+        final int chunksCount = Math.toIntExact(total / Compressor.BLOCK_SIZE_BYTES);
+
+        final Span[] spans = new Span[chunksCount];
+        final long[] keys = new long[chunksCount * 2];
+        final Random random = new Random(42);
+
+        for (int i = 0; i < chunksCount; i++) {
+            spans[i] = new Span((long) i * Compressor.BLOCK_SIZE_BYTES, Compressor.BLOCK_SIZE_BYTES, random.nextInt());
+            ChunkEntry.getDataKey(spans[i], keys, i * 2);
+        }
+
+        final byte[] data = new byte[Compressor.BLOCK_SIZE_BYTES];
+        random.nextBytes(data);
+
+        final ByteBuffer heap = ByteBuffer.wrap(data);
+        final ByteBuffer direct = ByteBuffer.allocateDirect(data.length).put(data).flip();
+
+        for (int round = 0; round < rounds; round++) {
+            // The first round warms up the JIT
+            final boolean print = round > 0 || rounds == 1;
+
+            measure("derived keys, heap", total, print, () -> {
+                for (Span span : spans) {
+                    ChunkEntry.swizzle(heap, span);
+                }
+            });
+
+            measure("derived keys, direct", total, print, () -> {
+                for (Span span : spans) {
+                    ChunkEntry.swizzle(direct, span);
+                }
+            });
+
+            measure("byte-wise, heap", total, print, () -> {
+                for (int i = 0; i < chunksCount; i++) {
+                    swizzleBytewise(heap, keys[i * 2], keys[i * 2 + 1]);
+                }
+            });
+
+            measure("precomputed keys, heap", total, print, () -> {
+                for (int i = 0; i < chunksCount; i++) {
+                    ChunkEntry.swizzle(heap, keys[i * 2], keys[i * 2 + 1]);
+                }
+            });
+
+            measure("precomputed keys, direct", total, print, () -> {
+                for (int i = 0; i < chunksCount; i++) {
+                    ChunkEntry.swizzle(direct, keys[i * 2], keys[i * 2 + 1]);
+                }
+            });
+        }
+    }
+
+    /**
+     * Applies a key one byte at a time, the way encryption was implemented originally. Serves as a baseline.
+     */
+    private static void swizzleBytewise(ByteBuffer buffer, long key1, long key2) {
+        final byte[] key = new byte[16];
+        IOUtils.put(key, 0, key1);
+        IOUtils.put(key, 8, key2);
+
+        for (int i = 0; i < buffer.remaining(); i++) {
+            buffer.put(i, (byte) (buffer.get(i) ^ key[i & 15]));
+        }
+    }
+
+    private static void measure(String name, long total, boolean print, Runnable runnable) {
+        final long start = System.nanoTime();
+        runnable.run();
+        final long elapsed = System.nanoTime() - start;
+
+        if (print) {
+            System.out.printf(
+                "%-26s size: %s, time: %d ms, throughput: %s/s%n",
+                name + ':', IOUtils.formatSize(total), elapsed / 1_000_000, IOUtils.formatSize((long) (total / (elapsed / 1e9)))
+            );
+        }
+    }
+}
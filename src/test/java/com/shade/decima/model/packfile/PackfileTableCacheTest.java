@@ -0,0 +1,274 @@
+package com.shade.decima.model.packfile;
+
+import com.shade.decima.model.packfile.resource.BufferResource;
+import com.shade.decima.model.util.Codec;
+import com.shade.decima.model.util.LZCodec;
+import com.shade.platform.model.runtime.VoidProgressMonitor;
+import com.shade.util.NotNull;
+import com.shade.util.Nullable;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+public class PackfileTableCacheTest {
+    private static final int FILES_COUNT = 16;
+    private static final int FILE_SIZE = 0x30000;
+
+    private final Codec codec = new LZCodec();
+
+    @TempDir
+    private Path directory;
+
+    @AfterEach
+    public void tearDown() {
+        codec.close();
+    }
+
+    @ParameterizedTest
+    @ValueSource(booleans = {false, true})
+    public void lazyLoadTest(boolean encrypt) throws IOException {
+        final Path packfile = writePackfile(encrypt);
+        final Path cache = directory.resolve("cache");
+
+        try (Packfile eager = openPackfile(packfile, cache)) {
+            // Tables are not cached yet, so they're read from the packfile and stored
+            Assertions.assertTrue(eager.isLoaded());
+        }
+
+        try (Packfile expected = openPackfile(packfile, null); Packfile actual = openPackfile(packfile, cache)) {
+            Assertions.assertFalse(actual.isLoaded());
+            Assertions.assertArrayEquals(expected.getFileHashes(), actual.getFileHashes());
+
+            // Looking up a file loads the rest of the tables
+            final long hash = expected.getFileEntries().get(0).hash();
+
+            Assertions.assertEquals(expected.getFileEntry(hash), actual.getFileEntry(hash));
+            Assertions.assertTrue(actual.isLoaded());
+            Assertions.assertEquals(expected.getFileEntries(), actual.getFileEntries());
+            Assertions.assertEquals(expected.getChunkEntries(), actual.getChunkEntries());
+
+            for (PackfileBase.FileEntry entry : expected.getFileEntries()) {
+                Assertions.assertArrayEquals(expected.extract(entry.hash()), actual.extract(entry.hash()));
+            }
+        }
+    }
+
+    @Test
+    public void lazyLoadFailureTest() throws IOException {
+        final Path packfile = writePackfile(true);
+        final Path cache = directory.resolve("cache");
+
+        // Stores tables of the packfile
+        openPackfile(packfile, cache).close();
+
+        try (Packfile actual = openPackfile(packfile, cache)) {
+            final long hash = actual.getFileHashes()[0];
+
+            // Cached tables become outdated, and the packfile itself is too short to contain its tables
+            try (FileChannel channel = FileChannel.open(packfile, StandardOpenOption.WRITE)) {
+                channel.truncate(PackfileBase.Header.BYTES);
+            }
+
+            Assertions.assertThrows(EOFException.class, () -> actual.extract(hash));
+            Assertions.assertThrows(EOFException.class, actual::load);
+            Assertions.assertThrows(UncheckedIOException.class, () -> actual.getFileEntry(hash));
+            Assertions.assertFalse(actual.isLoaded());
+        }
+    }
+
+    @Test
+    public void duplicateEntriesTest() throws IOException {
+        final Path packfile = writePackfile(false);
+        final Path cache = directory.resolve("cache");
+
+        // Replace the second file entry with a copy of the first one, so the packfile contains a duplicate
+        try (FileChannel channel = FileChannel.open(packfile, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            final ByteBuffer entry = ByteBuffer.allocate(PackfileBase.FileEntry.BYTES);
+            channel.read(entry, PackfileBase.Header.BYTES);
+            channel.write(entry.flip(), PackfileBase.Header.BYTES + PackfileBase.FileEntry.BYTES);
+        }
+
+        try (Packfile eager = openPackfile(packfile, cache)) {
+            Assertions.assertTrue(eager.isLoaded());
+            Assertions.assertEquals(FILES_COUNT - 1, eager.getFileEntries().size());
+        }
+
+        try (Packfile expected = openPackfile(packfile, null); Packfile actual = openPackfile(packfile, cache)) {
+            // Tables with fewer entries than the header states are still valid
+            Assertions.assertFalse(actual.isLoaded());
+            Assertions.assertEquals(expected.getFileEntries(), actual.getFileEntries());
+            Assertions.assertEquals(expected.getChunkEntries(), actual.getChunkEntries());
+        }
+    }
+
+    @Test
+    public void storeFailureTest() throws IOException {
+        final Path packfile = writePackfile(true);
+        final Path cache = directory.resolve("cache");
+
+        openPackfile(packfile, cache).close();
+
+        // A non-empty directory in place of the cache file can't be replaced
+        final Path file = getCacheFile();
+        Files.delete(file);
+        Files.createDirectory(file);
+        Files.createFile(file.resolve("child"));
+
+        try (Packfile actual = openPackfile(packfile, cache)) {
+            Assertions.assertTrue(actual.isLoaded());
+        }
+
+        // The temporary file the tables were written to is deleted
+        Assertions.assertEquals(file, getCacheFile());
+    }
+
+    @ParameterizedTest
+    @ValueSource(booleans = {false, true})
+    public void truncatedCacheTest(boolean encrypt) throws IOException {
+        corruptedCacheTest(encrypt, channel -> {
+            try {
+                channel.truncate(channel.size() - 1);
+            } catch (IOException e) {
+                throw new AssertionError(e);
+            }
+        });
+    }
+
+    @ParameterizedTest
+    @ValueSource(booleans = {false, true})
+    public void truncatedHeaderTest(boolean encrypt) throws IOException {
+        corruptedCacheTest(encrypt, channel -> {
+            try {
+                channel.truncate(20);
+            } catch (IOException e) {
+                throw new AssertionError(e);
+            }
+        });
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {-1, 0, FILES_COUNT + 1, Integer.MAX_VALUE})
+    public void corruptedCountsTest(int count) throws IOException {
+        // Offsets of the number of files and the number of chunks in the header
+        for (int offset : new int[]{32, 36}) {
+            corruptedCacheTest(true, channel -> write(channel, offset, count));
+            Files.delete(getCacheFile());
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {-1, Integer.MAX_VALUE})
+    public void corruptedNameTest(int length) throws IOException {
+        final Path packfile = writePackfile(true);
+        final Path cache = directory.resolve("cache");
+
+        // Stores tables of the packfile
+        openPackfile(packfile, cache).close();
+
+        try (FileChannel channel = FileChannel.open(getCacheFile(), StandardOpenOption.WRITE)) {
+            write(channel, 40, length);
+        }
+
+        try (Packfile expected = openPackfile(packfile, null); Packfile actual = openPackfile(packfile, cache)) {
+            // A cache file with a different name length may belong to another packfile, so it's only ignored
+            Assertions.assertTrue(actual.isLoaded());
+            Assertions.assertEquals(expected.getFileEntries(), actual.getFileEntries());
+            Assertions.assertEquals(expected.getChunkEntries(), actual.getChunkEntries());
+        }
+    }
+
+    private void corruptedCacheTest(boolean encrypt, @NotNull Consumer<FileChannel> corruptor) throws IOException {
+        final Path packfile = writePackfile(encrypt);
+        final Path cache = directory.resolve("cache");
+
+        // Stores tables of the packfile
+        openPackfile(packfile, cache).close();
+
+        try (FileChannel channel = FileChannel.open(getCacheFile(), StandardOpenOption.WRITE)) {
+            corruptor.accept(channel);
+        }
+
+        try (Packfile expected = openPackfile(packfile, null); Packfile actual = openPackfile(packfile, cache)) {
+            // The corrupted cache file is discarded, and the tables are read from the packfile
+            Assertions.assertTrue(actual.isLoaded());
+            Assertions.assertEquals(expected.getFileEntries(), actual.getFileEntries());
+            Assertions.assertEquals(expected.getChunkEntries(), actual.getChunkEntries());
+
+            for (PackfileBase.FileEntry entry : expected.getFileEntries()) {
+                Assertions.assertArrayEquals(expected.extract(entry.hash()), actual.extract(entry.hash()));
+            }
+        }
+
+        // Tables are stored again, so the following packfile is loaded lazily
+        try (Packfile expected = openPackfile(packfile, null); Packfile actual = openPackfile(packfile, cache)) {
+            Assertions.assertFalse(actual.isLoaded());
+            Assertions.assertEquals(expected.getFileEntries(), actual.getFileEntries());
+        }
+    }
+
+    @NotNull
+    private Path getCacheFile() throws IOException {
+        try (Stream<Path> files = Files.list(directory.resolve("cache"))) {
+            final List<Path> list = files.toList();
+            Assertions.assertEquals(1, list.size());
+            return list.get(0);
+        }
+    }
+
+    @NotNull
+    private Path writePackfile(boolean encrypt) throws IOException {
+        final Path path = directory.resolve(encrypt ? "Encrypted.bin" : "Plain.bin");
+
+        if (Files.exists(path)) {
+            return path;
+        }
+
+        final Random random = new Random(42);
+
+        try (
+            PackfileWriter writer = new PackfileWriter();
+            FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE)
+        ) {
+            for (int i = 0; i < FILES_COUNT; i++) {
+                final byte[] data = new byte[FILE_SIZE];
+                random.nextBytes(data);
+                writer.add(new BufferResource(data, random.nextLong()));
+            }
+
+            writer.write(new VoidProgressMonitor(), channel, codec, new PackfileWriter.Options(Codec.Level.FAST, encrypt));
+        }
+
+        return path;
+    }
+
+    @NotNull
+    private Packfile openPackfile(@NotNull Path path, @Nullable Path cache) throws IOException {
+        final FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        return new Packfile(channel, codec, null, path, false, null, cache != null ? new PackfileTableCache(cache) : null);
+    }
+
+    private static void write(@NotNull FileChannel channel, long position, int value) {
+        try {
+            channel.write(ByteBuffer.allocate(Integer.BYTES).order(ByteOrder.LITTLE_ENDIAN).putInt(0, value), position);
+        } catch (IOException e) {
+            throw new AssertionError(e);
+        }
+    }
+}
@@ -3,68 +3,503 @@ package com.shade.decima.model.packfile;
 import com.shade.decima.model.app.ProjectContainer;
 import com.shade.decima.model.app.Workspace;
 import com.shade.decima.model.packfile.resource.BufferResource;
+import com.shade.decima.model.packfile.resource.Resource;
+import com.shade.decima.model.packfile.resource.StreamResource;
+import com.shade.decima.model.util.Codec;
 import com.shade.decima.model.util.Compressor;
+import com.shade.decima.model.util.LZCodec;
 import com.shade.platform.model.runtime.VoidProgressMonitor;
+import com.shade.util.NotNull;
+import org.junit.jupiter.api.AfterAll;
 import org.junit.jupiter.api.Assertions;
-import org.junit.jupiter.api.Assumptions;
 import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
 import org.junit.jupiter.params.provider.ValueSource;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
 
 public class PackfileWriterTest {
     private static final Logger log = LoggerFactory.getLogger(PackfileWriterTest.class);
     private static final int FILES_COUNT = 3;
 
-    private static Compressor compressor;
+    private static final int[] LENGTHS = {0x0, 0x1, 0x10, 0x100, 0x1000, 0x10000, 0x3ffff, 0x40000, 0x40001, 0x7ffff, 0x80000, 0x80001, 0x7fffff};
+
+    private static final List<Codec> compressors = new ArrayList<>();
+
+    @TempDir
+    private Path directory;
 
     @BeforeAll
     public static void setUp() {
+        compressors.add(Codec.create(LZCodec.Provider.NAME, null));
+
         final Workspace workspace = new Workspace();
         final List<ProjectContainer> projects = workspace.getProjects();
 
         if (projects.isEmpty()) {
-            log.error("Can't find any suitable projects to borrow compressor from");
+            log.warn("Can't find any suitable projects to borrow compressor from, only the built-in codec will be tested");
         } else {
-            compressor = new Compressor(projects.get(0).getCompressorPath());
+            final Codec compressor = Codec.create(Compressor.Provider.NAME, projects.get(0).getCompressorPath());
             log.info("Using compressor " + compressor);
+            compressors.add(compressor);
+        }
+    }
+
+    @AfterAll
+    public static void tearDown() {
+        compressors.forEach(Codec::close);
+        compressors.clear();
+    }
+
+    public static Stream<Arguments> writePackfileTest() {
+        return IntStream.range(0, compressors.size()).boxed()
+            .flatMap(index -> IntStream.of(LENGTHS).boxed()
+                .flatMap(length -> Stream.of(false, true).map(mapped -> Arguments.of(index, length, mapped))));
+    }
+
+    @ParameterizedTest
+    @MethodSource
+    public void writePackfileTest(int compressorIndex, int length, boolean mapped) throws IOException {
+        final var compressor = compressors.get(compressorIndex);
+        final var files = createRandomFiles(length);
+        final var resources = IntStream.range(0, FILES_COUNT).mapToObj(i -> new BufferResource(files[i], i)).toList();
+
+        try (Packfile packfile = writePackfile(compressor, resources, false, mapped)) {
+            Assertions.assertEquals(FILES_COUNT, packfile.getFileEntries().size());
+
+            for (int i = 0; i < FILES_COUNT; i++) {
+                Assertions.assertArrayEquals(files[i], packfile.extract(i));
+            }
+        }
+    }
+
+    @ParameterizedTest
+    @MethodSource("writePackfileTest")
+    public void writeStreamingPackfileTest(int compressorIndex, int length, boolean mapped) throws IOException {
+        final var compressor = compressors.get(compressorIndex);
+        final var files = createRandomFiles(length);
+        final var resources = IntStream.range(0, FILES_COUNT).mapToObj(i -> new StreamResource(new ByteArrayInputStream(files[i]), i)).toList();
+
+        try (Packfile packfile = writePackfile(compressor, resources, false, mapped)) {
+            Assertions.assertEquals(FILES_COUNT, packfile.getFileEntries().size());
+
+            for (int i = 0; i < FILES_COUNT; i++) {
+                Assertions.assertArrayEquals(files[i], packfile.extract(i));
+            }
         }
     }
 
     @ParameterizedTest
-    @ValueSource(ints = {0x0, 0x1, 0x10, 0x100, 0x1000, 0x10000, 0x3ffff, 0x40000, 0x40001, 0x7ffff, 0x80000, 0x80001, 0x7fffff})
-    public void writePackfileTest(int length) throws IOException {
-        Assumptions.assumeTrue(compressor != null, "Can't find a compressor");
+    @ValueSource(longs = {Integer.MAX_VALUE + 1L, Long.MAX_VALUE})
+    public void tooBigResourceTest(long size) throws IOException {
+        final Resource resource = new SizedResource(new BufferResource(new byte[0], 0), size) {
+            @Override
+            public long read(@NotNull ByteBuffer buffer) {
+                throw new AssertionError("Resource of a known size must be rejected before it's read");
+            }
+        };
+
+        try (PackfileWriter writer = new PackfileWriter(); ByteArrayChannel channel = new ByteArrayChannel()) {
+            writer.add(resource);
+
+            final IOException e = Assertions.assertThrows(IOException.class, () -> writer.write(new VoidProgressMonitor(), channel, compressors.get(0), new PackfileWriter.Options(Compressor.Level.FAST, false)));
+            Assertions.assertTrue(e.getMessage().contains("too big"));
+            Assertions.assertEquals(0, channel.size());
+        }
+    }
+
+    @Test
+    public void longerResourceTest() throws IOException {
+        final byte[] data = new byte[Compressor.BLOCK_SIZE_BYTES * 2];
 
+        try (PackfileWriter writer = new PackfileWriter(); ByteArrayChannel channel = new ByteArrayChannel()) {
+            writer.add(new SizedResource(new BufferResource(data, 0), 0x1000));
+
+            final IOException e = Assertions.assertThrows(IOException.class, () -> writer.write(new VoidProgressMonitor(), channel, compressors.get(0), new PackfileWriter.Options(Compressor.Level.FAST, false)));
+            Assertions.assertTrue(e.getMessage().contains("but is longer"));
+        }
+    }
+
+    public static Stream<Arguments> appendPackfileTest() {
+        return IntStream.range(0, compressors.size()).boxed()
+            .flatMap(index -> Stream.of(false, true).map(encrypt -> Arguments.of(index, encrypt)));
+    }
+
+    @ParameterizedTest
+    @MethodSource
+    public void appendPackfileTest(int compressorIndex, boolean encrypt) throws IOException {
+        final var compressor = compressors.get(compressorIndex);
         final var channel = new ByteArrayChannel();
         final var monitor = new VoidProgressMonitor();
-        final var files = new byte[FILES_COUNT][length];
+        final var files = new HashMap<Long, byte[]>();
         final var random = new SecureRandom();
 
         try (PackfileWriter writer = new PackfileWriter()) {
             for (int i = 0; i < FILES_COUNT; i++) {
-                random.nextBytes(files[i]);
-                writer.add(new BufferResource(files[i], i));
+                files.put((long) i, new byte[0x40000]);
+                random.nextBytes(files.get((long) i));
+                writer.add(new BufferResource(files.get((long) i), i));
             }
 
-            final long written = writer.write(monitor, channel, compressor, new PackfileWriter.Options(Compressor.Level.FAST, false));
+            writer.write(monitor, channel, compressor, new PackfileWriter.Options(Compressor.Level.FAST, encrypt));
+        }
 
-            channel.position(0);
-            channel.truncate(written);
+        try (PackfileWriter writer = new PackfileWriter()) {
+            // Replace one of the files and add enough new ones to make the tables overlap with existing data
+            for (int i = FILES_COUNT - 1; i < FILES_COUNT + 200; i++) {
+                files.put((long) i, new byte[0x100]);
+                random.nextBytes(files.get((long) i));
+                writer.add(new BufferResource(files.get((long) i), i));
+            }
+
+            writer.append(monitor, channel, compressor, new PackfileWriter.Options(Compressor.Level.FAST, !encrypt), directory.resolve("backup"));
         }
 
+        Assertions.assertFalse(Files.exists(directory.resolve("backup")));
+
+        channel.position(0);
+
         try (Packfile packfile = new Packfile(channel, compressor, null, Path.of("dummy"))) {
-            Assertions.assertEquals(FILES_COUNT, packfile.getFileEntries().size());
+            Assertions.assertEquals(files.size(), packfile.getFileEntries().size());
+
+            for (Map.Entry<Long, byte[]> entry : files.entrySet()) {
+                Assertions.assertArrayEquals(entry.getValue(), packfile.extract(entry.getKey()));
+            }
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(booleans = {false, true})
+    public void appendFailureTest(boolean interrupted) throws IOException {
+        final var compressor = compressors.get(0);
+        final var channel = new FailingChannel();
+        final var monitor = new VoidProgressMonitor();
+        final var options = new PackfileWriter.Options(Compressor.Level.FAST, true);
+        final var backup = directory.resolve("backup");
+        final var files = new HashMap<Long, byte[]>();
+        final var random = new SecureRandom();
 
+        try (PackfileWriter writer = new PackfileWriter()) {
             for (int i = 0; i < FILES_COUNT; i++) {
-                Assertions.assertArrayEquals(files[i], packfile.extract(i));
+                files.put((long) i, new byte[0x40000]);
+                random.nextBytes(files.get((long) i));
+                writer.add(new BufferResource(files.get((long) i), i));
+            }
+
+            writer.write(monitor, channel, compressor, options);
+        }
+
+        final long size = channel.size();
+
+        try (PackfileWriter writer = new PackfileWriter()) {
+            // Add enough files to make the tables overlap with existing data, which is then overwritten
+            for (int i = FILES_COUNT; i < FILES_COUNT + 200; i++) {
+                writer.add(new BufferResource(new byte[0x100], i));
+            }
+
+            // An interrupted append can't restore the packfile until the next one
+            channel.failures = interrupted ? 2 : 1;
+            Assertions.assertThrows(IOException.class, () -> writer.append(monitor, channel, compressor, options, backup));
+            channel.failures = 0;
+        }
+
+        if (interrupted) {
+            Assertions.assertTrue(Files.exists(backup));
+
+            try (PackfileWriter writer = new PackfileWriter()) {
+                files.put(0L, new byte[0x100]);
+                random.nextBytes(files.get(0L));
+                writer.add(new BufferResource(files.get(0L), 0));
+                writer.append(monitor, channel, compressor, options, backup);
+            }
+        } else {
+            Assertions.assertEquals(size, channel.size());
+        }
+
+        Assertions.assertFalse(Files.exists(backup));
+
+        channel.position(0);
+
+        try (Packfile packfile = new Packfile(channel, compressor, null, Path.of("dummy"))) {
+            Assertions.assertEquals(files.size(), packfile.getFileEntries().size());
+
+            for (Map.Entry<Long, byte[]> entry : files.entrySet()) {
+                Assertions.assertArrayEquals(entry.getValue(), packfile.extract(entry.getKey()));
+            }
+        }
+    }
+
+    public static Stream<Arguments> addPackfileTest() {
+        return Stream.of(false, true).flatMap(encryptSource -> Stream.of(false, true).map(encrypt -> Arguments.of(encryptSource, encrypt)));
+    }
+
+    @ParameterizedTest
+    @MethodSource
+    public void addPackfileTest(boolean encryptSource, boolean encrypt) throws IOException {
+        final var compressor = compressors.get(0);
+        final var source = new ByteArrayChannel();
+        final var monitor = new VoidProgressMonitor();
+        final var files = new HashMap<Long, byte[]>();
+
+        // Chunks of the source are stored uncompressed, so copied chunks can be told apart from recompressed ones by their size
+        try (PackfileWriter writer = new PackfileWriter()) {
+            for (int i = 0; i < 5; i++) {
+                files.put((long) i, createCompressibleData(i == 4 ? 0x100 : Compressor.BLOCK_SIZE_BYTES, i));
+                writer.add(new BufferResource(files.get((long) i), i));
             }
+
+            writer.write(monitor, source, compressor, new PackfileWriter.Options(Compressor.Level.NONE, encryptSource));
+        }
+
+        source.position(0);
+
+        try (Packfile packfile = new Packfile(source, compressor, null, Path.of("dummy")); PackfileWriter writer = new PackfileWriter()) {
+            files.put(1L, createCompressibleData(0x1000, 10));
+            files.put(5L, createCompressibleData(0x1000, 11));
+
+            writer.addPackfile(packfile);
+            writer.add(new BufferResource(files.get(1L), 1));
+            writer.add(new BufferResource(files.get(5L), 5));
+
+            final var channel = new ByteArrayChannel();
+
+            writer.write(monitor, channel, compressor, new PackfileWriter.Options(Compressor.Level.FAST, encrypt));
+            channel.position(0);
+
+            try (Packfile result = new Packfile(channel, compressor, null, Path.of("dummy"))) {
+                // Chunks of files 0, 2 and 3 are copied, while file 4 lies in a partial chunk and is recompressed
+                final long copied = result.getChunkEntries().stream()
+                    .filter(chunk -> chunk.compressed().size() == Compressor.BLOCK_SIZE_BYTES + 1)
+                    .count();
+
+                Assertions.assertEquals(3, copied);
+                Assertions.assertEquals(files.size(), result.getFileEntries().size());
+
+                for (Map.Entry<Long, byte[]> entry : files.entrySet()) {
+                    Assertions.assertArrayEquals(entry.getValue(), result.extract(entry.getKey()));
+                }
+            }
+        }
+    }
+
+    public static Stream<Arguments> readPackfileArguments() {
+        return IntStream.range(0, compressors.size()).boxed()
+            .flatMap(index -> Stream.of(false, true)
+                .flatMap(encrypt -> Stream.of(false, true).map(mapped -> Arguments.of(index, encrypt, mapped))));
+    }
+
+    @ParameterizedTest
+    @MethodSource("readPackfileArguments")
+    public void readRangeTest(int compressorIndex, boolean encrypt, boolean mapped) throws IOException {
+        final var compressor = compressors.get(compressorIndex);
+        final var files = createRandomFiles(0x80001);
+        final var resources = IntStream.range(0, FILES_COUNT).mapToObj(i -> new BufferResource(files[i], i)).toList();
+        final int[][] ranges = {{0, 0}, {0, 1}, {0x3ffff, 2}, {0x40000, 0x40000}, {0x10, 0x7fff0}, {0x80000, 1}, {0x80001, 0}};
+
+        try (Packfile packfile = writePackfile(compressor, resources, encrypt, mapped)) {
+            for (int i = 0; i < FILES_COUNT; i++) {
+                for (int[] range : ranges) {
+                    final byte[] expected = Arrays.copyOfRange(files[i], range[0], range[0] + range[1]);
+                    final ByteBuffer actual = ByteBuffer.allocate(range[1]);
+
+                    Assertions.assertArrayEquals(expected, packfile.read(i, range[0], range[1]));
+
+                    try (SeekableByteChannel entry = packfile.newChannel(i)) {
+                        entry.position(range[0]);
+
+                        while (actual.hasRemaining()) {
+                            Assertions.assertTrue(entry.read(actual) > 0);
+                        }
+
+                        Assertions.assertArrayEquals(expected, actual.array());
+                    }
+                }
+
+                final int index = i;
+                Assertions.assertThrows(IndexOutOfBoundsException.class, () -> packfile.read(index, 0x80000, 2));
+            }
+        }
+    }
+
+    @ParameterizedTest
+    @MethodSource("readPackfileArguments")
+    public void readAheadTest(int compressorIndex, boolean encrypt, boolean mapped) throws IOException {
+        final var compressor = compressors.get(compressorIndex);
+        final var files = createRandomFiles(0x1c0001);
+        final var resources = IntStream.range(0, FILES_COUNT).mapToObj(i -> new BufferResource(files[i], i)).toList();
+
+        try (Packfile packfile = writePackfile(compressor, resources, encrypt, mapped)) {
+            for (int i = 0; i < FILES_COUNT; i++) {
+                for (int readAhead : new int[]{1, 3, 16}) {
+                    try (InputStream is = packfile.newInputStream(i, readAhead)) {
+                        Assertions.assertArrayEquals(files[i], is.readAllBytes());
+                    }
+
+                    // Closing the stream midway must discard chunks that are read ahead
+                    try (InputStream is = packfile.newInputStream(i, readAhead)) {
+                        Assertions.assertArrayEquals(Arrays.copyOf(files[i], 0x50000), is.readNBytes(0x50000));
+                    }
+                }
+            }
+        }
+    }
+
+    @ParameterizedTest
+    @MethodSource("readPackfileArguments")
+    public void readScheduledTest(int compressorIndex, boolean encrypt, boolean mapped) throws IOException {
+        final var compressor = compressors.get(compressorIndex);
+        final var random = new SecureRandom();
+        final var files = new byte[200][];
+        final var requested = new ArrayList<Long>();
+        final var read = new HashMap<Long, byte[]>();
+
+        for (int i = 0; i < files.length; i++) {
+            files[i] = new byte[random.nextInt(0x30000)];
+            random.nextBytes(files[i]);
+        }
+
+        for (long i = 0; i < files.length; i += random.nextInt(3) + 1) {
+            requested.add(i);
+        }
+
+        final var resources = IntStream.range(0, files.length).mapToObj(i -> new BufferResource(files[i], i)).toList();
+
+        try (Packfile packfile = writePackfile(compressor, resources, encrypt, mapped)) {
+            new PackfileReadScheduler(packfile).read(requested, (hash, data) -> Assertions.assertNull(read.put(hash, data)));
+        }
+
+        Assertions.assertEquals(requested.size(), read.size());
+
+        for (long hash : requested) {
+            Assertions.assertArrayEquals(files[(int) hash], read.get(hash));
+        }
+    }
+
+    /**
+     * Writes the given resources to a new packfile and opens it for reading.
+     *
+     * @param mapped whether the packfile should be written to a temporary file and memory-mapped rather than kept in memory
+     */
+    @NotNull
+    private Packfile writePackfile(@NotNull Codec compressor, @NotNull List<? extends Resource> resources, boolean encrypt, boolean mapped) throws IOException {
+        final Path path = directory.resolve("packfile.bin");
+        final SeekableByteChannel channel = mapped
+            ? FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE)
+            : new ByteArrayChannel();
+
+        try (PackfileWriter writer = new PackfileWriter()) {
+            resources.forEach(writer::add);
+
+            final long written = writer.write(new VoidProgressMonitor(), channel, compressor, new PackfileWriter.Options(Compressor.Level.FAST, encrypt));
+
+            channel.position(0);
+            channel.truncate(written);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+
+        return new Packfile(channel, compressor, null, path, mapped, null);
+    }
+
+    /**
+     * A channel that fails to write at its start, as if the header of a packfile was being written when the process was killed.
+     */
+    private static class FailingChannel extends ByteArrayChannel {
+        private int failures;
+
+        @Override
+        public int write(ByteBuffer src) throws IOException {
+            if (failures > 0 && position() == 0) {
+                failures -= 1;
+
+                // Only a part of the data is written
+                final int limit = src.limit();
+                super.write(src.limit(src.position() + src.remaining() / 2));
+                src.limit(limit);
+
+                throw new IOException("Simulated failure");
+            }
+
+            return super.write(src);
         }
     }
+
+    /**
+     * A resource that reports the given size regardless of its actual size.
+     */
+    private static class SizedResource implements Resource {
+        private final Resource delegate;
+        private final long size;
+
+        SizedResource(@NotNull Resource delegate, long size) {
+            this.delegate = delegate;
+            this.size = size;
+        }
+
+        @Override
+        public long read(@NotNull ByteBuffer buffer) throws IOException {
+            return delegate.read(buffer);
+        }
+
+        @Override
+        public long hash() {
+            return delegate.hash();
+        }
+
+        @Override
+        public long size() {
+            return size;
+        }
+
+        @Override
+        public void close() throws IOException {
+            delegate.close();
+        }
+    }
+
+    @NotNull
+    private static byte[][] createRandomFiles(int length) {
+        final byte[][] files = new byte[FILES_COUNT][length];
+        final SecureRandom random = new SecureRandom();
+
+        for (byte[] file : files) {
+            random.nextBytes(file);
+        }
+
+        return files;
+    }
+
+    @NotNull
+    private static byte[] createCompressibleData(int length, int seed) {
+        final byte[] data = new byte[length];
+
+        for (int i = 0; i < length; i++) {
+            data[i] = (byte) (seed * 31 + i / 64);
+        }
+
+        return data;
+    }
 }
@@ -0,0 +1,88 @@
+package com.shade.decima.model.util;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class BufferPoolTest {
+    @Test
+    public void reuseTest() {
+        final BufferPool pool = new BufferPool(4);
+        final byte[] buffer = pool.acquire(0x100);
+
+        Assertions.assertEquals(0x100, buffer.length);
+
+        pool.release(buffer);
+
+        Assertions.assertSame(buffer, pool.acquire(0x100));
+        Assertions.assertNotSame(buffer, pool.acquire(0x100));
+    }
+
+    @Test
+    public void sizeTest() {
+        final BufferPool pool = new BufferPool(4);
+        final byte[] small = pool.acquire(0x100);
+        final byte[] large = pool.acquire(0x200);
+
+        pool.release(small);
+        pool.release(large);
+
+        // Arrays are only handed out to requests of their exact size
+        Assertions.assertSame(large, pool.acquire(0x200));
+        Assertions.assertEquals(0x80, pool.acquire(0x80).length);
+        Assertions.assertSame(small, pool.acquire(0x100));
+    }
+
+    @Test
+    public void capacityTest() {
+        final BufferPool pool = new BufferPool(2);
+        final List<byte[]> buffers = List.of(pool.acquire(0x10), pool.acquire(0x10), pool.acquire(0x10));
+
+        buffers.forEach(pool::release);
+
+        // Only the first two arrays fit into the pool, the third one is dropped
+        Assertions.assertSame(buffers.get(0), pool.acquire(0x10));
+        Assertions.assertSame(buffers.get(1), pool.acquire(0x10));
+        Assertions.assertFalse(buffers.contains(pool.acquire(0x10)));
+    }
+
+    @Test
+    public void concurrencyTest() throws Exception {
+        final BufferPool pool = new BufferPool(16);
+        final Set<byte[]> inUse = Collections.synchronizedSet(Collections.newSetFromMap(new IdentityHashMap<>()));
+        final ExecutorService executor = Executors.newFixedThreadPool(8);
+
+        try {
+            final List<Future<?>> futures = new ArrayList<>();
+
+            for (int i = 0; i < 8; i++) {
+                futures.add(executor.submit(() -> {
+                    for (int j = 0; j < 10000; j++) {
+                        final byte[] buffer = pool.acquire(0x40);
+
+                        // An array must never be handed out to two owners at once
+                        Assertions.assertTrue(inUse.add(buffer));
+                        Assertions.assertTrue(inUse.remove(buffer));
+
+                        pool.release(buffer);
+                    }
+                    return null;
+                }));
+            }
+
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
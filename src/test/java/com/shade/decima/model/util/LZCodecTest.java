@@ -0,0 +1,87 @@
+package com.shade.decima.model.util;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+public class LZCodecTest {
+    private final Codec codec = new LZCodec();
+
+    @ParameterizedTest
+    @ValueSource(ints = {0x0, 0x1, 0xc, 0xd, 0x100, 0x1000, 0x10000, 0x3ffff, 0x40000})
+    public void roundTripTest(int length) throws IOException {
+        final Random random = new Random(length);
+        final byte[] repeating = new byte[length];
+        final byte[] noise = new byte[length];
+
+        for (int i = 0; i < length; i++) {
+            repeating[i] = (byte) (random.nextInt(4) == 0 ? random.nextInt() : i / 64);
+        }
+
+        random.nextBytes(noise);
+
+        for (Codec.Level level : Codec.Level.values()) {
+            Assertions.assertArrayEquals(repeating, roundTrip(repeating, level));
+            Assertions.assertArrayEquals(noise, roundTrip(noise, level));
+        }
+    }
+
+    @Test
+    public void compressionRatioTest() throws IOException {
+        final byte[] src = new byte[Compressor.BLOCK_SIZE_BYTES];
+        final byte[] dst = new byte[Compressor.getCompressedSize(src.length)];
+
+        for (int i = 0; i < src.length; i++) {
+            src[i] = (byte) (i % 13);
+        }
+
+        Assertions.assertTrue(codec.compress(src, dst, Codec.Level.FAST) < src.length / 100);
+        Assertions.assertEquals(src.length + 1, codec.compress(src, dst, Codec.Level.NONE));
+    }
+
+    @Test
+    public void corruptedDataTest() throws IOException {
+        final byte[] src = new byte[0x1000];
+        final byte[] dst = new byte[Compressor.getCompressedSize(src.length)];
+        final int length = codec.compress(src, dst, Codec.Level.FAST);
+
+        Assertions.assertThrows(IOException.class, () -> codec.decompress(dst, length, new byte[src.length + 1], src.length + 1));
+        Assertions.assertThrows(IOException.class, () -> codec.decompress(dst, length - 1, new byte[src.length], src.length));
+    }
+
+    @Test
+    public void reusedBufferTest() throws IOException {
+        final ByteBuffer output = ByteBuffer.allocateDirect(Compressor.getCompressedSize(0x1000));
+        final Random random = new Random(0);
+
+        for (int i = 0; i < 4; i++) {
+            final byte[] src = new byte[0x1000];
+            final byte[] dst = new byte[src.length];
+            random.nextBytes(src);
+
+            final int length = codec.compress(ByteBuffer.wrap(src), output.clear(), Codec.Level.FAST);
+
+            Assertions.assertEquals(length, output.position());
+            codec.decompress(output.flip(), dst, dst.length);
+            Assertions.assertArrayEquals(src, dst);
+        }
+
+        Assertions.assertThrows(IllegalArgumentException.class, () -> codec.compress(ByteBuffer.allocate(0x1000), output.clear().limit(0x1000), Codec.Level.FAST));
+    }
+
+    private byte[] roundTrip(byte[] data, Codec.Level level) throws IOException {
+        final byte[] compressed = new byte[Compressor.getCompressedSize(data.length)];
+        final byte[] decompressed = new byte[data.length];
+        final int length = codec.compress(data, compressed, level);
+
+        Assertions.assertTrue(length <= data.length + 1);
+        codec.decompress(compressed, length, decompressed, decompressed.length);
+
+        return decompressed;
+    }
+}
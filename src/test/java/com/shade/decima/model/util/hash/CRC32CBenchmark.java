@@ -0,0 +1,111 @@
+package com.shade.decima.model.util.hash;
+
+import com.shade.platform.model.util.IOUtils;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+/**
+ * Measures throughput of {@link CRC32C} for inputs of different lengths, compared to the table-driven
+ * implementation it replaced. Short inputs are typical for hashes of strings and integer keys.
+ * <p>
+ * Not a part of the test suite because its results depend on the machine it's run on.
+ * <p>
+ * Usage: {@code CRC32CBenchmark [total size in MiB] [rounds]}
+ */
+public class CRC32CBenchmark {
+    private static final int[] LENGTHS = {4, 8, 16, 64, 4096, 1024 * 1024};
+    private static final int[] LOOKUP = new int[256];
+
+    static {
+        for (int i = 0; i < LOOKUP.length; i++) {
+            int r = i;
+
+            for (int j = 0; j < 8; j++) {
+                r = (r >>> 1) ^ ((r & 1) != 0 ? 0x82F63B78 : 0);
+            }
+
+            LOOKUP[i] = r;
+        }
+    }
+
+    private static volatile int sink;
+
+    public static void main(String[] args) {
+        final long total = (args.length > 0 ? Long.parseLong(args[0]) : 256) * 1024 * 1024;
+        final int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+
+        final byte[] data = new byte[LENGTHS[LENGTHS.length - 1]];
+        new Random(42).nextBytes(data);
+
+        final ByteBuffer direct = ByteBuffer.allocateDirect(data.length).put(data).flip();
+
+        for (int round = 0; round < rounds; round++) {
+            // The first round warms up the JIT
+            final boolean print = round > 0 || rounds == 1;
+
+            for (int length : LENGTHS) {
+                final long count = total / length;
+
+                measure("baseline, " + length + " B", total, print, () -> {
+                    int result = 0;
+
+                    for (long i = 0; i < count; i++) {
+                        result ^= calculateBytewise(data, length);
+                    }
+
+                    sink = result;
+                });
+
+                measure("calculate, " + length + " B", total, print, () -> {
+                    int result = 0;
+
+                    for (long i = 0; i < count; i++) {
+                        result ^= CRC32C.calculate(data, 0, length);
+                    }
+
+                    sink = result;
+                });
+
+                measure("direct buffer, " + length + " B", total, print, () -> {
+                    final CRC32C crc = new CRC32C();
+                    int result = 0;
+
+                    for (long i = 0; i < count; i++) {
+                        crc.reset();
+                        crc.update(direct.slice(0, length));
+                        result ^= (int) crc.getValue();
+                    }
+
+                    sink = result;
+                });
+            }
+        }
+    }
+
+    /**
+     * Computes a checksum one byte at a time using a lookup table, the way it was implemented originally. Serves as a baseline.
+     */
+    private static int calculateBytewise(byte[] data, int length) {
+        int crc = 0;
+
+        for (int i = 0; i < length; i++) {
+            crc = LOOKUP[(crc ^ data[i]) & 0xff] ^ (crc >>> 8);
+        }
+
+        return crc & ~0x80000000;
+    }
+
+    private static void measure(String name, long total, boolean print, Runnable runnable) {
+        final long start = System.nanoTime();
+        runnable.run();
+        final long elapsed = System.nanoTime() - start;
+
+        if (print) {
+            System.out.printf(
+                "%-26s size: %s, time: %d ms, throughput: %s/s%n",
+                name + ':', IOUtils.formatSize(total), elapsed / 1_000_000, IOUtils.formatSize((long) (total / (elapsed / 1e9)))
+            );
+        }
+    }
+}
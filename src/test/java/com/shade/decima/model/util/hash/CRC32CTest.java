@@ -0,0 +1,64 @@
+package com.shade.decima.model.util.hash;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+public class CRC32CTest {
+    private static final int[] LOOKUP = new int[256];
+
+    static {
+        for (int i = 0; i < LOOKUP.length; i++) {
+            int r = i;
+
+            for (int j = 0; j < 8; j++) {
+                r = (r >>> 1) ^ ((r & 1) != 0 ? 0x82F63B78 : 0);
+            }
+
+            LOOKUP[i] = r;
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {0, 1, 3, 4, 7, 8, 15, 16, 31, 64, 255, 1000, 0x10000})
+    public void compatibilityTest(int length) {
+        final byte[] data = new byte[length];
+        new Random(length).nextBytes(data);
+
+        final int expected = reference(data);
+
+        Assertions.assertEquals(expected, CRC32C.calculate(data));
+
+        final CRC32C crc = new CRC32C();
+        crc.update(data, 0, length / 2);
+        crc.update(ByteBuffer.allocateDirect(length - length / 2).put(data, length / 2, length - length / 2).flip());
+        Assertions.assertEquals(expected, (int) crc.getValue());
+
+        crc.reset();
+        for (byte b : data) {
+            crc.update(b);
+        }
+        Assertions.assertEquals(expected, (int) crc.getValue());
+    }
+
+    @Test
+    public void knownValuesTest() {
+        Assertions.assertEquals(0, CRC32C.calculate(new byte[0]));
+        Assertions.assertEquals(0x58E3FA20, CRC32C.calculate("123456789".getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private static int reference(byte[] data) {
+        int crc = 0;
+
+        for (byte b : data) {
+            crc = LOOKUP[(crc ^ b) & 0xff] ^ (crc >>> 8);
+        }
+
+        return crc & ~0x80000000;
+    }
+}
@@ -0,0 +1,94 @@
+package com.shade.decima.model.util.hash;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.stream.Stream;
+
+public class MurmurHash3Test {
+    private static Stream<Arguments> knownStringTest() {
+        // Expected values were computed by the reference implementation this class replaced
+        return Stream.of(
+            Arguments.of("", 0xf02aa77dfa1b8523L, 0xd1016610da11cbb9L, 0x323efed30b226dc8L),
+            Arguments.of("a", 0x28259ca4fdf626b0L, 0x25ebca9125f82b15L, 0x57d15ef2a3b4a41dL),
+            Arguments.of("abc", 0x0d85089fb3cff7d6L, 0x7510712b42353d30L, 0xb657489cffa22fa0L),
+            Arguments.of("0123456789abcde", 0x84688acce2e6963dL, 0xc124ca1ee8c6bee7L, 0x09d5f00191f0532bL),
+            Arguments.of("0123456789abcdef", 0x818ea26bed3cb2a4L, 0xf604d245f9269fdeL, 0x0d06dfeaf20a4d77L),
+            Arguments.of("0123456789abcdef0", 0x66fb2273f71d63e3L, 0xc5a33661978eeeeeL, 0xe191e38879cd2c03L),
+            Arguments.of("models/characters/humans/aloy.core", 0x4733f00d5420fb89L, 0x89d43940917e2396L, 0x7a1606811112dbe5L),
+            Arguments.of("localized/sentences/aigenerated/aloy.core", 0x4aca3b2c28b77ddeL, 0xc6305c5235ddf21cL, 0xf867d54b3554ae64L)
+        );
+    }
+
+    private static Stream<Arguments> knownLengthTest() {
+        // Expected values were computed by the reference implementation this class replaced
+        return Stream.of(
+            Arguments.of(0, 0xf02aa77dfa1b8523L, 0xd1016610da11cbb9L),
+            Arguments.of(1, 0xf68404fd01db9127L, 0x2b74ab57e85f4833L),
+            Arguments.of(7, 0xea4024f3d894b37fL, 0x167c8387c02b3a76L),
+            Arguments.of(8, 0x8150b8e03546e103L, 0x50dbc7e30cce19baL),
+            Arguments.of(9, 0x856b6391988d722cL, 0x4fb1772ce167d408L),
+            Arguments.of(15, 0x4a768a7043815c33L, 0x8b6a54b14d3ef379L),
+            Arguments.of(16, 0x5ca3709bd2c71250L, 0xe0f0be97128c31bdL),
+            Arguments.of(17, 0x2aae09fd6811cb34L, 0xaa784c49e49eb69cL),
+            Arguments.of(31, 0x808a7574f0edc7fdL, 0xfe40014fb3d92ea9L),
+            Arguments.of(32, 0xf83598f0f6290f76L, 0x1923f87596eef493L),
+            Arguments.of(33, 0xfc7299529d8227c9L, 0x87875a18a884b074L),
+            Arguments.of(63, 0x499d589eec33d3bfL, 0xf58272c9390472feL)
+        );
+    }
+
+    @ParameterizedTest
+    @MethodSource
+    public void knownStringTest(String string, long low, long high, long terminatedLow) {
+        final byte[] data = string.getBytes(StandardCharsets.UTF_8);
+        final long[] hash = new long[3];
+
+        MurmurHash3.mmh3(data, 0, data.length, hash, 1);
+
+        Assertions.assertArrayEquals(new long[]{low, high}, MurmurHash3.mmh3(data));
+        Assertions.assertArrayEquals(new long[]{0, low, high}, hash);
+        Assertions.assertEquals(low, MurmurHash3.mmh3Low(data, 0, data.length, false));
+        Assertions.assertEquals(terminatedLow, MurmurHash3.mmh3Low(data, 0, data.length, true));
+        Assertions.assertEquals(terminatedLow, MurmurHash3.mmh3Low(ByteBuffer.wrap(data), 0, data.length, true));
+    }
+
+    @ParameterizedTest
+    @MethodSource
+    public void knownLengthTest(int length, long low, long high) {
+        final byte[] data = new byte[64];
+
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) (i * 31 + 7);
+        }
+
+        Assertions.assertArrayEquals(new long[]{low, high}, MurmurHash3.mmh3(data, 1, length));
+        Assertions.assertEquals(low, MurmurHash3.mmh3Low(data, 1, length, false));
+        Assertions.assertEquals(low, MurmurHash3.mmh3Low(ByteBuffer.allocateDirect(data.length).put(data), 1, length, false));
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {0, 1, 7, 8, 9, 14, 15, 16, 17, 31, 32, 33, 100})
+    public void lowHashTest(int length) {
+        final byte[] data = new byte[length + 2];
+        new Random(length).nextBytes(data);
+
+        final byte[] cstr = Arrays.copyOfRange(data, 1, length + 2);
+        cstr[length] = 0;
+
+        final long expected = MurmurHash3.mmh3(data, 1, length)[0];
+        final long expectedTerminated = MurmurHash3.mmh3(cstr)[0];
+
+        Assertions.assertEquals(expected, MurmurHash3.mmh3Low(data, 1, length, false));
+        Assertions.assertEquals(expectedTerminated, MurmurHash3.mmh3Low(data, 1, length, true));
+        Assertions.assertEquals(expected, MurmurHash3.mmh3Low(ByteBuffer.wrap(data), 1, length, false));
+        Assertions.assertEquals(expectedTerminated, MurmurHash3.mmh3Low(ByteBuffer.allocateDirect(data.length).put(data), 1, length, true));
+    }
+}